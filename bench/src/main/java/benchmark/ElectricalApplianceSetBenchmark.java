@@ -0,0 +1,299 @@
+package benchmark;
+
+import electrical_appliances.*;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the main operations of {@code ElectricalApplianceSet} and compares it
+ * with {@link HashSet} and {@link LinkedHashSet}.
+ * <p>
+ * Each operation is run for every set implementation at sizes from 10 to 10<sup>6</sup>; JMH runs
+ * every combination in forked JVMs of its own, so the profile the JIT compiler collects for one
+ * implementation does not distort the code compiled for another. The appliances are a mix of all
+ * five subclasses, so the {@code equals} call sites inside the sets see several receiver types,
+ * as they do in production. Each benchmark processes the whole set once, so the reported time
+ * per operation divided by the size is the time per element. The sets that remove and retainAll
+ * work on are filled before each invocation, outside the measured time.
+ * <p>
+ * Build and run it with {@code mvn -f bench/pom.xml package} and
+ * {@code java -jar bench/target/benchmarks.jar}; JMH options such as {@code -p size=1000}
+ * restrict the runs.
+ * <p>
+ * JMH does not accept benchmarks in the unnamed package, where the sets of this project live,
+ * and classes of the unnamed package cannot be named from any other. The set under test is
+ * therefore created through a constant method handle of its constructor, which the JIT compiler
+ * turns into a plain constructor call; every other operation goes through the {@link Set}
+ * interface, as it does for the JDK sets.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ElectricalApplianceSetBenchmark {
+    /**
+     * The constructor {@code ElectricalApplianceSet()}, typed as returning a {@link Set}.
+     */
+    private static final MethodHandle NEW_ELECTRICAL_APPLIANCE_SET;
+
+    static {
+        try {
+            NEW_ELECTRICAL_APPLIANCE_SET = MethodHandles.publicLookup()
+                    .findConstructor(Class.forName("ElectricalApplianceSet"), MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Set.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * The set implementations compared.
+     */
+    public enum Implementation {
+        /** The set of this project. */
+        ELECTRICAL_APPLIANCE_SET {
+            @Override
+            @SuppressWarnings("unchecked")
+            Set<ElectricalAppliance> newSet() {
+                try {
+                    return (Set<ElectricalAppliance>) NEW_ELECTRICAL_APPLIANCE_SET.invokeExact();
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        },
+        /** {@link HashSet}. */
+        HASH_SET {
+            @Override
+            Set<ElectricalAppliance> newSet() {
+                return new HashSet<>();
+            }
+        },
+        /** {@link LinkedHashSet}, which iterates in insertion order like the set of this project. */
+        LINKED_HASH_SET {
+            @Override
+            Set<ElectricalAppliance> newSet() {
+                return new LinkedHashSet<>();
+            }
+        };
+
+        /**
+         * @return an empty set of this implementation.
+         */
+        abstract Set<ElectricalAppliance> newSet();
+    }
+
+    /**
+     * The number of elements of the set.
+     */
+    @Param({"10", "100", "1000", "10000", "100000", "1000000"})
+    int size;
+
+    /**
+     * The set implementation under test.
+     */
+    @Param
+    Implementation implementation;
+
+    /**
+     * The appliances stored in {@link #filled}.
+     */
+    ElectricalAppliance[] members;
+
+    /**
+     * Appliances equal to none of the members.
+     */
+    ElectricalAppliance[] absent;
+
+    /**
+     * A set of the implementation under test holding all the {@link #members}.
+     */
+    Set<ElectricalAppliance> filled;
+
+    /**
+     * Every second member, in a {@link HashSet}; the JDK sets would take quadratic time
+     * to retain the elements of a list.
+     */
+    Set<ElectricalAppliance> half;
+
+    /**
+     * Creates the appliances and fills the set read by the benchmarks.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        members = createAppliances(size, 0);
+        absent = createAppliances(size, size);
+        filled = fill(newSet(), members);
+        half = new HashSet<>();
+        for (int i = 0; i < size; i += 2) {
+            half.add(members[i]);
+        }
+    }
+
+    /**
+     * A freshly filled set for each invocation of a benchmark that removes elements.
+     */
+    @State(Scope.Thread)
+    public static class FreshSet {
+        /**
+         * The set, holding all the members.
+         */
+        Set<ElectricalAppliance> set;
+
+        /**
+         * Fills a new set before each invocation; the time spent here is not measured.
+         *
+         * @param benchmark The shared state holding the members.
+         */
+        @Setup(Level.Invocation)
+        public void fill(ElectricalApplianceSetBenchmark benchmark) {
+            set = ElectricalApplianceSetBenchmark.fill(benchmark.newSet(), benchmark.members);
+        }
+    }
+
+    /**
+     * @return a new set filled with all the members, one add at a time.
+     */
+    @Benchmark
+    public Set<ElectricalAppliance> add() {
+        return fill(newSet(), members);
+    }
+
+    /**
+     * @param blackhole Consumes the results.
+     */
+    @Benchmark
+    public void containsHit(Blackhole blackhole) {
+        for (ElectricalAppliance appliance : members) {
+            blackhole.consume(filled.contains(appliance));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results.
+     */
+    @Benchmark
+    public void containsMiss(Blackhole blackhole) {
+        for (ElectricalAppliance appliance : absent) {
+            blackhole.consume(filled.contains(appliance));
+        }
+    }
+
+    /**
+     * @param fresh A set holding all the members.
+     * @return the emptied set.
+     */
+    @Benchmark
+    public Set<ElectricalAppliance> remove(FreshSet fresh) {
+        Set<ElectricalAppliance> set = fresh.set;
+        for (ElectricalAppliance appliance : members) {
+            set.remove(appliance);
+        }
+        return set;
+    }
+
+    /**
+     * @param blackhole Consumes the elements.
+     */
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for (ElectricalAppliance appliance : filled) {
+            blackhole.consume(appliance);
+        }
+    }
+
+    /**
+     * @return a new set to which all the members were added at once.
+     */
+    @Benchmark
+    public Set<ElectricalAppliance> addAll() {
+        Set<ElectricalAppliance> set = newSet();
+        set.addAll(filled);
+        return set;
+    }
+
+    /**
+     * @param fresh A set holding all the members.
+     * @return the set, holding every second member.
+     */
+    @Benchmark
+    public Set<ElectricalAppliance> retainAll(FreshSet fresh) {
+        Set<ElectricalAppliance> set = fresh.set;
+        set.retainAll(half);
+        return set;
+    }
+
+    /**
+     * @return an array of all the members.
+     */
+    @Benchmark
+    public Object[] toArray() {
+        return filled.toArray();
+    }
+
+    /**
+     * @return an empty set of the implementation under test.
+     */
+    Set<ElectricalAppliance> newSet() {
+        return implementation.newSet();
+    }
+
+    /**
+     * Creates distinct appliances of all five kinds in turn, with a handful of brands.
+     *
+     * @param count The number of appliances.
+     * @param first The number of the first appliance; appliances with different numbers differ.
+     * @return the appliances.
+     */
+    private static ElectricalAppliance[] createAppliances(int count, int first) {
+        String[] brands = {"Bosch", "Samsung", "LG", "Philips", "Panasonic"};
+        ElectricalAppliance[] appliances = new ElectricalAppliance[count];
+        for (int i = 0; i < count; i++) {
+            int n = first + i;
+            String brand = brands[(n / 5) % brands.length];
+            double power = 100 + n;
+            double emission = n % 50;
+            appliances[i] = switch (n % 5) {
+                case 0 -> new ElectricStove(brand, power, emission);
+                case 1 -> new Hairdryer(brand, power, emission);
+                case 2 -> new Microwave(brand, power, emission);
+                case 3 -> new VacuumCleaner(brand, power, emission);
+                default -> new WashingMachine(brand, power, emission);
+            };
+        }
+        return appliances;
+    }
+
+    /**
+     * Adds all the appliances to the set.
+     *
+     * @return the set.
+     */
+    private static Set<ElectricalAppliance> fill(Set<ElectricalAppliance> set, ElectricalAppliance[] appliances) {
+        for (ElectricalAppliance appliance : appliances) {
+            set.add(appliance);
+        }
+        return set;
+    }
+}
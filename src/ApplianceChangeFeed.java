@@ -0,0 +1,315 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The change feed of an {@link ElectricalApplianceSet}, obtained with {@link ElectricalApplianceSet#changes()}.
+ * <p>
+ * The set appends an event to a bounded ring buffer whenever an element is added or removed,
+ * the set is cleared or an element is plugged in or unplugged. Appending never blocks and never
+ * waits for subscribers: it claims the next sequence number and stores the event in its slot,
+ * overwriting the event one ring length older. Structural changes are appended by the thread
+ * that modifies the set; plug events are appended by the plugging threads, which the atomic
+ * claim makes safe.
+ * <p>
+ * Each subscriber reads the ring from its own position and receives the events in batches of up
+ * to {@link #maxBatchSize()}, one batch per unit of demand requested through its
+ * {@link Flow.Subscription}. The batches are delivered by tasks run on the executor of the feed,
+ * started when events arrive for a subscriber with outstanding demand, so the cost of change
+ * detection is proportional to the number of changes. A subscriber that falls more than one ring
+ * length behind receives an {@link Kind#OVERFLOW} event in place of the events it missed and
+ * should then resynchronize, e.g. from {@link ElectricalApplianceSet#snapshot()}.
+ * The feed never completes.
+ *
+ * @param <T> The type of the elements of the set.
+ */
+public final class ApplianceChangeFeed<T extends ElectricalAppliance> implements Flow.Publisher<List<ApplianceChangeFeed.Change<T>>> {
+    /**
+     * The default number of events kept in the ring.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * The default largest number of events per batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    /**
+     * The kinds of changes.
+     */
+    public enum Kind {
+        /** An element was added to the set. */
+        ADDED,
+        /** An element was removed from the set. */
+        REMOVED,
+        /** The set was cleared; no {@link #REMOVED} events are sent for its elements. */
+        CLEARED,
+        /** An element of the set was plugged in. */
+        PLUGGED_IN,
+        /** An element of the set was unplugged. */
+        UNPLUGGED,
+        /** The subscriber fell behind and the events from this sequence number on were lost. */
+        OVERFLOW
+    }
+
+    /**
+     * A change of the set.
+     *
+     * @param kind      The kind of change.
+     * @param appliance The element concerned, or {@code null} for {@link Kind#CLEARED} and {@link Kind#OVERFLOW}.
+     * @param sequence  The position of the change in the feed, counted from 0.
+     * @param <T>       The type of the elements of the set.
+     */
+    public record Change<T>(Kind kind, T appliance, long sequence) {
+    }
+
+    private final AtomicReferenceArray<Change<T>> ring;
+    private final int mask;
+    private final int maxBatchSize;
+    private final Executor executor;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * The active subscriptions; replaced on every change, so appending can read it without locking.
+     */
+    private volatile FeedSubscription<?>[] subscriptions = new FeedSubscription<?>[0];
+
+    /**
+     * Creates a feed with the default capacity and batch size, delivering on the common pool.
+     */
+    ApplianceChangeFeed() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a feed.
+     *
+     * @param capacity     The number of events kept in the ring, rounded up to a power of two.
+     * @param maxBatchSize The largest number of events per batch.
+     * @param executor     The executor running the deliveries to subscribers.
+     * @throws IllegalArgumentException if the capacity or batch size is not positive.
+     */
+    ApplianceChangeFeed(int capacity, int maxBatchSize, Executor executor) {
+        if (capacity <= 0 || capacity > 1 << 30 || maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be positive.");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * @return the number of events kept in the ring.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the largest number of events delivered in one batch.
+     */
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return the sequence number the next change will get, i.e. the number of changes so far.
+     */
+    public long position() {
+        return next.get();
+    }
+
+    /**
+     * Subscribes to the changes made from now on.
+     *
+     * @param subscriber The subscriber receiving batches of changes.
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<Change<T>>> subscriber) {
+        FeedSubscription<T> subscription = new FeedSubscription<>(this, subscriber, next.get());
+        synchronized (this) {
+            FeedSubscription<?>[] current = subscriptions;
+            FeedSubscription<?>[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * Appends a change and wakes the subscribers waiting for one.
+     *
+     * @param kind      The kind of change.
+     * @param appliance The element concerned, or {@code null}.
+     */
+    void publish(Kind kind, T appliance) {
+        long sequence = next.getAndIncrement();
+        ring.set((int) sequence & mask, new Change<>(kind, appliance, sequence));
+        for (FeedSubscription<?> subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Stops delivering to a cancelled subscription.
+     */
+    private synchronized void unsubscribe(FeedSubscription<?> subscription) {
+        FeedSubscription<?>[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                FeedSubscription<?>[] updated = new FeedSubscription<?>[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * The position and demand of one subscriber. Deliveries are serialized by a work-in-progress
+     * counter: whoever raises it from zero runs the delivery loop on the executor, and signals
+     * arriving meanwhile make the loop run once more instead of starting a second one. Errors
+     * take the same path, so the subscriber is never called from two threads at once.
+     */
+    private static final class FeedSubscription<T extends ElectricalAppliance> implements Flow.Subscription, Runnable {
+        private final ApplianceChangeFeed<T> feed;
+        private final Flow.Subscriber<? super List<Change<T>>> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private long cursor;
+
+        FeedSubscription(ApplianceChangeFeed<T> feed, Flow.Subscriber<? super List<Change<T>>> subscriber,
+                         long cursor) {
+            this.feed = feed;
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (error == null) {
+                    error = new IllegalArgumentException("Demand must be positive: " + n);
+                }
+                feed.unsubscribe(this);
+                drain();
+                return;
+            }
+            demand.getAndAccumulate(n, (current, added) -> {
+                long sum = current + added;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled) {
+                cancelled = true;
+                feed.unsubscribe(this);
+            }
+        }
+
+        /**
+         * Starts a delivery if there is demand, unless one is running.
+         */
+        void signal() {
+            if (demand.get() > 0 && !cancelled) {
+                drain();
+            }
+        }
+
+        /**
+         * Runs the delivery loop on the executor, or makes the running one go round once more.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() == 0) {
+                feed.executor.execute(this);
+            }
+        }
+
+        /**
+         * Delivers batches while there are both changes and demand, or the pending error.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                Throwable failure = error;
+                if (failure != null) {
+                    if (!cancelled) {
+                        cancelled = true;
+                        subscriber.onError(failure);
+                    }
+                    return;
+                }
+                while (demand.get() > 0 && !cancelled && error == null) {
+                    List<Change<T>> batch = nextBatch();
+                    if (batch == null) {
+                        break;
+                    }
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(batch);
+                    } catch (RuntimeException | Error e) {
+                        cancel();
+                        subscriber.onError(e);
+                        return;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        /**
+         * Reads the published changes from the cursor on.
+         *
+         * @return the next batch, an overflow notice if the cursor was overtaken, or {@code null} if
+         * there is nothing new.
+         */
+        @SuppressWarnings("unchecked")
+        private List<Change<T>> nextBatch() {
+            long available = feed.next.get() - cursor;
+            if (available <= 0) {
+                return null;
+            }
+            Change<T>[] batch = (Change<T>[]) new Change<?>[(int) Math.min(feed.maxBatchSize, available)];
+            int count = 0;
+            while (count < batch.length) {
+                long sequence = cursor + count;
+                Change<T> change = feed.ring.get((int) sequence & feed.mask);
+                if (change == null || change.sequence() < sequence) {
+                    break;
+                }
+                if (change.sequence() > sequence) {
+                    if (count > 0) {
+                        break;
+                    }
+                    long resume = Math.max(sequence + 1, feed.next.get() - feed.capacity());
+                    cursor = resume;
+                    return List.of(new Change<>(Kind.OVERFLOW, null, sequence));
+                }
+                batch[count++] = change;
+            }
+            if (count == 0) {
+                return null;
+            }
+            cursor += count;
+            return Collections.unmodifiableList(Arrays.asList(batch).subList(0, count));
+        }
+    }
+}
@@ -0,0 +1,316 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.util.Arrays;
+
+/**
+ * A columnar companion of {@link ElectricalApplianceSet} for analytics over the numeric
+ * properties of its appliances.
+ * <p>
+ * Power and electromagnetic emission are kept in parallel {@code double[]} columns, and the
+ * plugging status and slot occupancy in {@code long[]} bitsets, all at the same positions as
+ * the appliances in the internal array of the set. The aggregate methods only read these
+ * primitive arrays, never the appliance objects, so they run over contiguous memory in tight
+ * loops the JIT compiler can vectorize. Free slots hold zero in both columns and are clear in
+ * both bitsets, so sums need no filtering.
+ * <p>
+ * The columns are maintained by the owning set; they cannot be modified from outside, and like the
+ * set they are read on the thread owning it. Plug events, which may come from any thread, never
+ * write to the columns: the set only notes that one arrived, and the queries over the plugging
+ * status ask it to read the status of its appliances again first.
+ */
+public final class ApplianceColumns {
+    /**
+     * Brings the plugging bitset up to date after plug events; run before it is read.
+     */
+    private final Runnable refreshPlugging;
+
+    /**
+     * The power consumption of the appliance in each slot, in watts.
+     */
+    private double[] power;
+
+    /**
+     * The electromagnetic emission of the appliance in each slot, in microtesla.
+     */
+    private double[] emission;
+
+    /**
+     * The bitset of slots holding a plugged-in appliance.
+     */
+    private long[] pluggedIn;
+
+    /**
+     * The bitset of slots holding an appliance.
+     */
+    private long[] occupied;
+
+    /**
+     * The number of slots in use, including free slots before the last occupied one.
+     */
+    private int end;
+
+    /**
+     * Creates empty columns able to hold the specified number of slots.
+     *
+     * @param capacity        The number of slots.
+     * @param refreshPlugging Brings the plugging bitset up to date after plug events.
+     */
+    ApplianceColumns(int capacity, Runnable refreshPlugging) {
+        this.refreshPlugging = refreshPlugging;
+        allocate(capacity);
+    }
+
+    /**
+     * Replaces the columns with empty ones able to hold the specified number of slots.
+     *
+     * @param capacity The number of slots.
+     */
+    void allocate(int capacity) {
+        power = new double[capacity];
+        emission = new double[capacity];
+        pluggedIn = new long[words(capacity)];
+        occupied = new long[words(capacity)];
+        end = 0;
+    }
+
+    /**
+     * Grows the columns to the specified number of slots, keeping their contents.
+     *
+     * @param capacity The new number of slots.
+     */
+    void grow(int capacity) {
+        power = Arrays.copyOf(power, capacity);
+        emission = Arrays.copyOf(emission, capacity);
+        pluggedIn = Arrays.copyOf(pluggedIn, words(capacity));
+        occupied = Arrays.copyOf(occupied, words(capacity));
+    }
+
+    /**
+     * Records the properties of the appliance stored at the specified slot.
+     *
+     * @param slot      The slot in the internal array of the set.
+     * @param appliance The appliance in that slot.
+     */
+    void set(int slot, ElectricalAppliance appliance) {
+        power[slot] = appliance.getPower();
+        emission[slot] = appliance.getElectromagneticEmission();
+        occupied[slot >>> 6] |= 1L << slot;
+        setPluggedIn(slot, appliance.isPluggedIn());
+        if (slot >= end) {
+            end = slot + 1;
+        }
+    }
+
+    /**
+     * Updates the plugging status of the appliance stored at the specified slot.
+     *
+     * @param slot      The slot in the internal array of the set.
+     * @param plugged   The new plugging status.
+     */
+    void setPluggedIn(int slot, boolean plugged) {
+        if (plugged) {
+            pluggedIn[slot >>> 6] |= 1L << slot;
+        } else {
+            pluggedIn[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+
+    /**
+     * Marks the specified slot as free.
+     *
+     * @param slot The slot in the internal array of the set.
+     */
+    void clear(int slot) {
+        power[slot] = 0;
+        emission[slot] = 0;
+        occupied[slot >>> 6] &= ~(1L << slot);
+        setPluggedIn(slot, false);
+    }
+
+    /**
+     * Moves the values of an occupied slot to a lower, free one, as done during compaction.
+     *
+     * @param from The slot to move from.
+     * @param to   The slot to move to.
+     */
+    void move(int from, int to) {
+        boolean plugged = (pluggedIn[from >>> 6] & (1L << from)) != 0;
+        double p = power[from];
+        double e = emission[from];
+        clear(from);
+        power[to] = p;
+        emission[to] = e;
+        occupied[to >>> 6] |= 1L << to;
+        if (plugged) {
+            setPluggedIn(to, true);
+        }
+    }
+
+    /**
+     * Frees all slots from the specified one onwards.
+     *
+     * @param newEnd The new number of slots in use.
+     */
+    void truncate(int newEnd) {
+        for (int i = newEnd; i < end; i++) {
+            clear(i);
+        }
+        end = newEnd;
+    }
+
+    /**
+     * @return the number of appliances in the columns.
+     */
+    public int count() {
+        int count = 0;
+        for (int w = 0, words = words(end); w < words; w++) {
+            count += Long.bitCount(occupied[w]);
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of plugged-in appliances.
+     */
+    public int pluggedInCount() {
+        refreshPlugging.run();
+        int count = 0;
+        for (int w = 0, words = words(end); w < words; w++) {
+            count += Long.bitCount(pluggedIn[w]);
+        }
+        return count;
+    }
+
+    /**
+     * @return the total power consumption of all appliances, in watts.
+     */
+    public double totalPower() {
+        return sum(power);
+    }
+
+    /**
+     * @return the total electromagnetic emission of all appliances, in microtesla.
+     */
+    public double totalEmission() {
+        return sum(emission);
+    }
+
+    /**
+     * @return the total power consumption of the plugged-in appliances, in watts.
+     */
+    public double pluggedInPower() {
+        refreshPlugging.run();
+        double sum = 0;
+        for (int w = 0, words = words(end); w < words; w++) {
+            long bits = pluggedIn[w];
+            while (bits != 0) {
+                sum += power[(w << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the smallest power consumption, or {@link Double#NaN} if there are no appliances.
+     */
+    public double minPower() {
+        return extreme(power, false);
+    }
+
+    /**
+     * @return the largest power consumption, or {@link Double#NaN} if there are no appliances.
+     */
+    public double maxPower() {
+        return extreme(power, true);
+    }
+
+    /**
+     * @return the smallest electromagnetic emission, or {@link Double#NaN} if there are no appliances.
+     */
+    public double minEmission() {
+        return extreme(emission, false);
+    }
+
+    /**
+     * @return the largest electromagnetic emission, or {@link Double#NaN} if there are no appliances.
+     */
+    public double maxEmission() {
+        return extreme(emission, true);
+    }
+
+    /**
+     * @param threshold The emission limit in microtesla.
+     * @return the number of appliances whose electromagnetic emission exceeds the limit.
+     */
+    public int countEmissionAbove(double threshold) {
+        int count = 0;
+        double[] e = emission;
+        for (int w = 0, words = words(end); w < words; w++) {
+            long bits = occupied[w];
+            int base = w << 6;
+            if (bits == -1L) {
+                for (int i = base; i < base + 64; i++) {
+                    count += e[i] > threshold ? 1 : 0;
+                }
+                continue;
+            }
+            while (bits != 0) {
+                count += e[base + Long.numberOfTrailingZeros(bits)] > threshold ? 1 : 0;
+                bits &= bits - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the sum of the first {@link #end} values of the column.
+     */
+    private double sum(double[] column) {
+        double sum = 0;
+        for (int i = 0; i < end; i++) {
+            sum += column[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Finds the smallest or largest value of the column among the occupied slots.
+     * Fully occupied words, the common case, are scanned with a plain loop.
+     *
+     * @param column The column to scan.
+     * @param max    {@code true} to find the largest value, {@code false} for the smallest.
+     * @return the value found, or {@link Double#NaN} if no slot is occupied.
+     */
+    private double extreme(double[] column, boolean max) {
+        double result = max ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        boolean found = false;
+        for (int w = 0, words = words(end); w < words; w++) {
+            long bits = occupied[w];
+            if (bits == 0) {
+                continue;
+            }
+            found = true;
+            int base = w << 6;
+            if (bits == -1L) {
+                for (int i = base; i < base + 64; i++) {
+                    result = max ? Math.max(result, column[i]) : Math.min(result, column[i]);
+                }
+                continue;
+            }
+            while (bits != 0) {
+                double v = column[base + Long.numberOfTrailingZeros(bits)];
+                result = max ? Math.max(result, v) : Math.min(result, v);
+                bits &= bits - 1;
+            }
+        }
+        return found ? result : Double.NaN;
+    }
+
+    /**
+     * @return the number of {@code long} words needed for a bitset of the specified number of bits.
+     */
+    private static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+}
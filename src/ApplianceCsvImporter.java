@@ -0,0 +1,480 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Streams appliances from comma-separated text into an {@link ElectricalApplianceSet}.
+ * <p>
+ * Every line describes one appliance as {@code type,brand,power,emission,pluggedIn}, e.g.
+ * {@code Microwave,LG,800,1.5,true}. The type is the name of one of the five appliance classes,
+ * matched ignoring case, spaces, underscores and hyphens, so {@code washing machine} and
+ * {@code WASHING_MACHINE} both denote {@code WashingMachine}. An empty brand stands for no brand,
+ * and the plugging status is {@code true}, {@code false}, {@code 1} or {@code 0}. A first line
+ * whose type field is {@code type} is taken as a header and skipped, and so are blank lines.
+ * <p>
+ * The input is read through a reused buffer and parsed byte by byte: no line or field strings are
+ * created, brands are decoded once per distinct brand, and numbers are converted directly from
+ * their digits. The appliances are added in batches, growing the set ahead of each batch so that
+ * it is not resized row by row. Lines that cannot be parsed are counted as rejected and skipped,
+ * as are rows equal to an appliance already in the set. Plugged-in rows are created plugged in
+ * without publishing plug events, so an import does not flood the plug event sink.
+ */
+public class ApplianceCsvImporter {
+    /**
+     * The default number of appliances inserted per batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 8192;
+
+    /**
+     * The initial size of the read buffer; it grows if a single line does not fit.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The type names, lower case without separators, in the order of their snapshot type tags.
+     */
+    private static final byte[][] TYPE_NAMES = {
+            ascii("electricstove"), ascii("hairdryer"), ascii("microwave"),
+            ascii("vacuumcleaner"), ascii("washingmachine")};
+
+    /**
+     * The type tags matching {@link #TYPE_NAMES}.
+     */
+    private static final byte[] TYPE_TAGS = {
+            ApplianceSnapshotCodec.TAG_ELECTRIC_STOVE, ApplianceSnapshotCodec.TAG_HAIRDRYER,
+            ApplianceSnapshotCodec.TAG_MICROWAVE, ApplianceSnapshotCodec.TAG_VACUUM_CLEANER,
+            ApplianceSnapshotCodec.TAG_WASHING_MACHINE};
+
+    /**
+     * The exactly representable powers of ten, used to convert short decimal numbers.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * The outcome of an import.
+     *
+     * @param rows         The number of non-blank data lines read.
+     * @param added        The number of appliances added to the set.
+     * @param duplicates   The number of rows equal to an appliance already in the set.
+     * @param rejected     The number of rows that could not be parsed.
+     * @param bytes        The number of bytes read.
+     * @param elapsedNanos The duration of the import, in nanoseconds.
+     */
+    public record Report(long rows, long added, long duplicates, long rejected, long bytes, long elapsedNanos) {
+        /**
+         * @return the number of rows processed per second.
+         */
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return the number of megabytes (10<sup>6</sup> bytes) read per second.
+         */
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e3 / elapsedNanos;
+        }
+
+        /**
+         * @return a one-line summary of the import.
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d rows (%d added, %d duplicates, %d rejected) in %.1f ms: %.0f rows/s, %.1f MB/s",
+                    rows, added, duplicates, rejected, elapsedNanos / 1e6, rowsPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    private final int batchSize;
+
+    /**
+     * Constructs an importer inserting {@value #DEFAULT_BATCH_SIZE} appliances per batch.
+     */
+    public ApplianceCsvImporter() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs an importer inserting the specified number of appliances per batch.
+     *
+     * @param batchSize The number of appliances per batch.
+     * @throws IllegalArgumentException if the batch size is not positive.
+     */
+    public ApplianceCsvImporter(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports the appliances listed in the file into the set.
+     * The size of the file is used to grow the set once the length of a row is known.
+     *
+     * @param file The file to read.
+     * @param set  The set receiving the appliances.
+     * @return the report of the import.
+     * @throws IOException if the file cannot be read.
+     */
+    public Report importFile(Path file, ElectricalApplianceSet<ElectricalAppliance> set) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new Run(set, channel.size()).read(channel);
+        }
+    }
+
+    /**
+     * Imports the appliances read from the stream into the set. The stream is not closed.
+     *
+     * @param in  The stream to read.
+     * @param set The set receiving the appliances.
+     * @return the report of the import.
+     * @throws IOException if the stream cannot be read.
+     */
+    public Report importStream(InputStream in, ElectricalApplianceSet<ElectricalAppliance> set) throws IOException {
+        return new Run(set, -1).read(Channels.newChannel(in));
+    }
+
+    /**
+     * The state of one import.
+     */
+    private final class Run {
+        private final ElectricalApplianceSet<ElectricalAppliance> set;
+        private final long inputSize;
+        private final ElectricalAppliance[] batch = new ElectricalAppliance[batchSize];
+        private int batchLength;
+        private int reserved;
+        private final BrandCache brands = new BrandCache();
+        private final int[] fieldStarts = new int[5];
+        private final int[] fieldEnds = new int[5];
+        private long rows;
+        private long added;
+        private long duplicates;
+        private long rejected;
+        private long bytes;
+        private boolean firstLine = true;
+
+        /**
+         * @param set       The set receiving the appliances.
+         * @param inputSize The size of the input in bytes, or {@code -1} if unknown.
+         */
+        Run(ElectricalApplianceSet<ElectricalAppliance> set, long inputSize) {
+            this.set = set;
+            this.inputSize = inputSize;
+            this.reserved = set.size();
+        }
+
+        /**
+         * Reads the channel to its end, parsing every complete line.
+         *
+         * @return the report of the import.
+         */
+        Report read(ReadableByteChannel channel) throws IOException {
+            long start = System.nanoTime();
+            byte[] data = new byte[BUFFER_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (true) {
+                int n = channel.read(buffer);
+                if (n < 0) {
+                    break;
+                }
+                bytes += n;
+                int limit = buffer.position();
+                int lineStart = 0;
+                for (int i = 0; i < limit; i++) {
+                    if (data[i] == '\n') {
+                        parseLine(data, lineStart, i);
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart == 0 && limit == data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                    buffer = ByteBuffer.wrap(data).position(limit);
+                } else {
+                    System.arraycopy(data, lineStart, data, 0, limit - lineStart);
+                    buffer.position(limit - lineStart);
+                }
+            }
+            if (buffer.position() > 0) {
+                parseLine(data, 0, buffer.position());
+            }
+            flush();
+            return new Report(rows, added, duplicates, rejected, bytes, System.nanoTime() - start);
+        }
+
+        /**
+         * Parses one line, without its terminator, and queues the appliance it describes.
+         */
+        private void parseLine(byte[] data, int from, int to) {
+            if (to > from && data[to - 1] == '\r') {
+                to--;
+            }
+            if (to == from) {
+                return;
+            }
+            boolean header = firstLine;
+            firstLine = false;
+            int fields = 0;
+            int fieldStart = from;
+            for (int i = from; i <= to; i++) {
+                if (i == to || data[i] == ',') {
+                    if (fields == fieldStarts.length) {
+                        fields++;
+                        break;
+                    }
+                    fieldStarts[fields] = fieldStart;
+                    fieldEnds[fields++] = i;
+                    fieldStart = i + 1;
+                }
+            }
+            if (header && matchesLetters(data, fieldStarts[0], fieldEnds[0], ascii("type"))) {
+                return;
+            }
+            rows++;
+            if (fields != fieldStarts.length) {
+                rejected++;
+                return;
+            }
+            byte tag = parseType(data, fieldStarts[0], fieldEnds[0]);
+            double power = parseDouble(data, fieldStarts[2], fieldEnds[2]);
+            double emission = parseDouble(data, fieldStarts[3], fieldEnds[3]);
+            int plugged = parseBoolean(data, fieldStarts[4], fieldEnds[4]);
+            if (tag == 0 || !(power >= 0) || !(emission >= 0) || plugged < 0) {
+                rejected++;
+                return;
+            }
+            ElectricalAppliance appliance;
+            try {
+                appliance = ApplianceSnapshotCodec.create(tag,
+                        brands.get(data, fieldStarts[1], fieldEnds[1]), power, emission, plugged == 1);
+            } catch (StreamCorruptedException e) {
+                throw new AssertionError(e);
+            }
+            batch[batchLength++] = appliance;
+            if (batchLength == batch.length) {
+                flush();
+            }
+        }
+
+        /**
+         * Grows the set for the queued appliances and adds them.
+         */
+        private void flush() {
+            if (batchLength == 0) {
+                return;
+            }
+            int needed = set.size() + batchLength;
+            if (needed > reserved) {
+                long estimate = inputSize > 0
+                        ? set.size() + (long) ((double) (inputSize - bytes) * rows / bytes) + batchLength
+                        : (long) reserved + (reserved >> 1);
+                reserved = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, estimate));
+                set.ensureCapacity(reserved);
+            }
+            for (int i = 0; i < batchLength; i++) {
+                if (set.add(batch[i])) {
+                    added++;
+                } else {
+                    duplicates++;
+                }
+                batch[i] = null;
+            }
+            batchLength = 0;
+        }
+    }
+
+    /**
+     * @return the type tag named by the field, or 0 if it names no appliance type.
+     */
+    private static byte parseType(byte[] data, int from, int to) {
+        for (int t = 0; t < TYPE_NAMES.length; t++) {
+            if (matchesLetters(data, from, to, TYPE_NAMES[t])) {
+                return TYPE_TAGS[t];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Checks whether the field spells the name, ignoring case, spaces, underscores and hyphens.
+     *
+     * @param name The name in lower-case ASCII letters.
+     */
+    private static boolean matchesLetters(byte[] data, int from, int to, byte[] name) {
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            int c = data[i];
+            if (c == ' ' || c == '_' || c == '-') {
+                continue;
+            }
+            if (j == name.length || (c | 0x20) != name[j++]) {
+                return false;
+            }
+        }
+        return j == name.length;
+    }
+
+    /**
+     * @return 1 for {@code true} or {@code 1}, 0 for {@code false} or {@code 0}, -1 otherwise.
+     */
+    private static int parseBoolean(byte[] data, int from, int to) {
+        while (from < to && data[from] == ' ') from++;
+        while (to > from && data[to - 1] == ' ') to--;
+        if (to - from == 1) {
+            return data[from] == '1' ? 1 : data[from] == '0' ? 0 : -1;
+        }
+        if (matchesLetters(data, from, to, ascii("true"))) return 1;
+        if (matchesLetters(data, from, to, ascii("false"))) return 0;
+        return -1;
+    }
+
+    /**
+     * Parses a decimal number. Numbers with at most 15 significant digits and a small exponent,
+     * the usual case, are converted exactly with one multiplication or division; others are
+     * handed to {@link Double#parseDouble}.
+     *
+     * @return the number, or {@link Double#NaN} if the field is not a number.
+     */
+    private static double parseDouble(byte[] data, int from, int to) {
+        while (from < to && data[from] == ' ') from++;
+        while (to > from && data[to - 1] == ' ') to--;
+        int i = from;
+        boolean negative = false;
+        if (i < to && (data[i] == '-' || data[i] == '+')) {
+            negative = data[i++] == '-';
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < to; i++) {
+            int c = data[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digits < 18) {
+                    if (mantissa != 0 || c != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (seenPoint) scale--;
+                } else if (!seenPoint) {
+                    scale++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return Double.NaN;
+        }
+        if (i < to) {
+            if ((data[i] | 0x20) != 'e') {
+                return Double.NaN;
+            }
+            return slowParse(data, from, to);
+        }
+        if (digits > 15 || Math.abs(scale) >= POWERS_OF_TEN.length) {
+            return slowParse(data, from, to);
+        }
+        double value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the number parsed by {@link Double#parseDouble}, or {@link Double#NaN} if it is malformed.
+     */
+    private static double slowParse(byte[] data, int from, int to) {
+        try {
+            return Double.parseDouble(new String(data, from, to - from, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @return the ASCII bytes of the string.
+     */
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Decodes brand fields to strings, once per distinct brand. The cache is an open-addressing
+     * table keyed by the raw UTF-8 bytes, so a brand seen before is found without decoding it.
+     */
+    private static final class BrandCache {
+        private byte[][] keys = new byte[64][];
+        private String[] values = new String[64];
+        private int size;
+
+        /**
+         * @return the brand in the field, or {@code null} if the field is empty.
+         */
+        String get(byte[] data, int from, int to) {
+            if (to == from) {
+                return null;
+            }
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + data[i];
+            }
+            int mask = keys.length - 1;
+            int slot = (hash * 0x9E3779B9) >>> 7 & mask;
+            for (; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (Arrays.equals(keys[slot], 0, keys[slot].length, data, from, to)) {
+                    return values[slot];
+                }
+            }
+            byte[] key = Arrays.copyOfRange(data, from, to);
+            String value = new String(key, StandardCharsets.UTF_8);
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        /**
+         * Doubles the table.
+         */
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            String[] oldValues = values;
+            keys = new byte[oldKeys.length * 2][];
+            values = new String[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                byte[] key = oldKeys[j];
+                if (key == null) {
+                    continue;
+                }
+                int hash = 1;
+                for (byte b : key) {
+                    hash = 31 * hash + b;
+                }
+                int slot = (hash * 0x9E3779B9) >>> 7 & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters and latency histograms of the hot paths of {@link ElectricalApplianceSet}.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -D}{@value #PROPERTY}{@code =true}.
+ * The flag is read once into the {@code static final} field {@link #ENABLED}, and every
+ * instrumentation point in the set is guarded by it, so when metrics are off the JIT compiler
+ * folds the guards away and the set runs exactly as without instrumentation. When they are on,
+ * the counters are {@link LongAdder}s and the histograms are fixed arrays of atomic counters, so
+ * recording never allocates and scales with the number of threads.
+ * <p>
+ * The values are read with {@link #snapshot()} or, when enabled, through JMX under the name
+ * {@value #OBJECT_NAME}.
+ */
+public final class ApplianceSetMetrics {
+    /**
+     * The system property enabling the metrics.
+     */
+    public static final String PROPERTY = "appliances.metrics";
+
+    /**
+     * The name of the MBean exposing the metrics.
+     */
+    public static final String OBJECT_NAME = "electrical_appliances:type=ApplianceSetMetrics";
+
+    /**
+     * Whether the metrics are recorded.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    /**
+     * The assumed size of one element slot copied by a resize: a compressed reference to the
+     * element and its cached hash code.
+     */
+    private static final int BYTES_PER_SLOT = 8;
+
+    private static final LongAdder LOOKUPS = new LongAdder();
+    private static final LongAdder LOOKUP_HITS = new LongAdder();
+    private static final LongAdder PROBES = new LongAdder();
+    private static final LongAdder ADDS = new LongAdder();
+    private static final LongAdder DUPLICATE_ADDS = new LongAdder();
+    private static final LongAdder RESIZES = new LongAdder();
+    private static final LongAdder COMPACTIONS = new LongAdder();
+    private static final LongAdder BYTES_COPIED = new LongAdder();
+
+    /**
+     * The durations of the bulk operations.
+     */
+    static final LatencyHistogram ADD_ALL = new LatencyHistogram();
+    static final LatencyHistogram RETAIN_ALL = new LatencyHistogram();
+    static final LatencyHistogram REMOVE_ALL = new LatencyHistogram();
+    static final LatencyHistogram REMOVE_IF = new LatencyHistogram();
+    static final LatencyHistogram RESIZE = new LatencyHistogram();
+
+    /**
+     * The histograms by operation name, in report order.
+     */
+    private static final Map<String, LatencyHistogram> HISTOGRAMS;
+
+    static {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        histograms.put("addAll", ADD_ALL);
+        histograms.put("retainAll", RETAIN_ALL);
+        histograms.put("removeAll", REMOVE_ALL);
+        histograms.put("removeIf", REMOVE_IF);
+        histograms.put("resize", RESIZE);
+        HISTOGRAMS = Collections.unmodifiableMap(histograms);
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                System.err.println("Cannot register " + OBJECT_NAME + ": " + e);
+            }
+        }
+    }
+
+    private ApplianceSetMetrics() {
+    }
+
+    /**
+     * Records a hash lookup.
+     *
+     * @param probes The number of buckets inspected.
+     * @param hit    Whether an equal element was found.
+     */
+    static void lookup(int probes, boolean hit) {
+        LOOKUPS.increment();
+        PROBES.add(probes);
+        if (hit) {
+            LOOKUP_HITS.increment();
+        }
+    }
+
+    /**
+     * Records a call to {@code add}.
+     *
+     * @param inserted Whether the element was inserted, as opposed to already present.
+     */
+    static void add(boolean inserted) {
+        ADDS.increment();
+        if (!inserted) {
+            DUPLICATE_ADDS.increment();
+        }
+    }
+
+    /**
+     * Records a reallocation of the internal storage.
+     *
+     * @param slotsCopied The number of element slots copied to the new storage.
+     * @param nanos       The duration of the reallocation.
+     */
+    static void resize(int slotsCopied, long nanos) {
+        RESIZES.increment();
+        BYTES_COPIED.add((long) slotsCopied * BYTES_PER_SLOT);
+        RESIZE.record(nanos);
+    }
+
+    /**
+     * Records a compaction of the internal storage without reallocation.
+     */
+    static void compaction() {
+        COMPACTIONS.increment();
+    }
+
+    /**
+     * @return the current values of all metrics.
+     */
+    public static Snapshot snapshot() {
+        Map<String, LatencyHistogram.Snapshot> latencies = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : HISTOGRAMS.entrySet()) {
+            latencies.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(LOOKUPS.sum(), LOOKUP_HITS.sum(), PROBES.sum(), ADDS.sum(), DUPLICATE_ADDS.sum(),
+                RESIZES.sum(), COMPACTIONS.sum(), BYTES_COPIED.sum(), Collections.unmodifiableMap(latencies));
+    }
+
+    /**
+     * Resets all counters and histograms.
+     */
+    public static void reset() {
+        LOOKUPS.reset();
+        LOOKUP_HITS.reset();
+        PROBES.reset();
+        ADDS.reset();
+        DUPLICATE_ADDS.reset();
+        RESIZES.reset();
+        COMPACTIONS.reset();
+        BYTES_COPIED.reset();
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * The values of the metrics at one point in time.
+     *
+     * @param lookups       The number of hash lookups.
+     * @param lookupHits    The number of lookups that found an equal element.
+     * @param probes        The number of hash index buckets inspected by the lookups.
+     * @param adds          The number of calls to {@code add} with a non-null appliance.
+     * @param duplicateAdds The number of those calls that found the appliance already present.
+     * @param resizes       The number of reallocations of the internal storage.
+     * @param compactions   The number of compactions without reallocation.
+     * @param bytesCopied   The estimated number of bytes copied by resizes.
+     * @param latencies     The durations of the timed operations, by operation name.
+     */
+    public record Snapshot(long lookups, long lookupHits, long probes, long adds, long duplicateAdds,
+                           long resizes, long compactions, long bytesCopied,
+                           Map<String, LatencyHistogram.Snapshot> latencies) {
+        /**
+         * @return the share of lookups that found an equal element, or 0 if there were none.
+         */
+        public double lookupHitRatio() {
+            return lookups == 0 ? 0 : (double) lookupHits / lookups;
+        }
+
+        /**
+         * @return the average number of buckets inspected per lookup, or 0 if there were none.
+         */
+        public double probesPerLookup() {
+            return lookups == 0 ? 0 : (double) probes / lookups;
+        }
+    }
+
+    /**
+     * The JMX view of the metrics.
+     */
+    private static final class Bean implements ApplianceSetMetricsMXBean {
+        @Override
+        public long getLookups() {
+            return LOOKUPS.sum();
+        }
+
+        @Override
+        public long getLookupHits() {
+            return LOOKUP_HITS.sum();
+        }
+
+        @Override
+        public double getLookupHitRatio() {
+            return snapshot().lookupHitRatio();
+        }
+
+        @Override
+        public double getProbesPerLookup() {
+            return snapshot().probesPerLookup();
+        }
+
+        @Override
+        public long getAdds() {
+            return ADDS.sum();
+        }
+
+        @Override
+        public long getDuplicateAdds() {
+            return DUPLICATE_ADDS.sum();
+        }
+
+        @Override
+        public long getResizes() {
+            return RESIZES.sum();
+        }
+
+        @Override
+        public long getCompactions() {
+            return COMPACTIONS.sum();
+        }
+
+        @Override
+        public long getBytesCopied() {
+            return BYTES_COPIED.sum();
+        }
+
+        @Override
+        public String[] getTimedOperations() {
+            return HISTOGRAMS.keySet().toArray(new String[0]);
+        }
+
+        @Override
+        public long latencyPercentileNanos(String operation, double percentile) {
+            return histogram(operation).snapshot().percentile(percentile);
+        }
+
+        @Override
+        public String latencySummary(String operation) {
+            return histogram(operation).snapshot().toString();
+        }
+
+        @Override
+        public void reset() {
+            ApplianceSetMetrics.reset();
+        }
+
+        /**
+         * @return the histogram of the operation.
+         * @throws IllegalArgumentException if there is no such operation.
+         */
+        private static LatencyHistogram histogram(String operation) {
+            LatencyHistogram histogram = HISTOGRAMS.get(operation);
+            if (histogram == null) {
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+            return histogram;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * The management interface of {@link ApplianceSetMetrics}, registered with the platform MBean
+ * server as {@value ApplianceSetMetrics#OBJECT_NAME} when metrics are enabled.
+ */
+public interface ApplianceSetMetricsMXBean {
+    /**
+     * @return the number of hash lookups made by {@code contains}, {@code add} and {@code remove}.
+     */
+    long getLookups();
+
+    /**
+     * @return the number of lookups that found an equal element.
+     */
+    long getLookupHits();
+
+    /**
+     * @return the share of lookups that found an equal element, from 0 to 1.
+     */
+    double getLookupHitRatio();
+
+    /**
+     * @return the average number of hash index buckets inspected per lookup.
+     */
+    double getProbesPerLookup();
+
+    /**
+     * @return the number of calls to {@code add} with a non-null appliance.
+     */
+    long getAdds();
+
+    /**
+     * @return the number of those calls that found the appliance already present.
+     */
+    long getDuplicateAdds();
+
+    /**
+     * @return the number of times the internal storage of a set was reallocated.
+     */
+    long getResizes();
+
+    /**
+     * @return the number of times the holes left by removals were squeezed out without reallocating.
+     */
+    long getCompactions();
+
+    /**
+     * @return the estimated number of bytes copied by resizes.
+     */
+    long getBytesCopied();
+
+    /**
+     * @return the names of the timed operations.
+     */
+    String[] getTimedOperations();
+
+    /**
+     * @param operation  The name of a timed operation.
+     * @param percentile The share of calls, from 0 to 100.
+     * @return the duration below which that share of the calls completed, in nanoseconds.
+     */
+    long latencyPercentileNanos(String operation, double percentile);
+
+    /**
+     * @param operation The name of a timed operation.
+     * @return the summary of the durations of the operation.
+     */
+    String latencySummary(String operation);
+
+    /**
+     * Resets all counters and histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,312 @@
+import electrical_appliances.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes and reads compact binary snapshots of appliance sets.
+ * <p>
+ * A snapshot consists of:
+ * <ul>
+ *     <li>a header: the magic number {@code "EAS1"}, the format version and the number of appliances;</li>
+ *     <li>the brand table: the number of distinct brands followed by each brand in modified UTF-8;</li>
+ *     <li>the appliances in blocks of up to 64, each block starting with a {@code long} bitmap of the
+ *     plugged-in appliances in it, followed by one record per appliance: a one-byte type tag,
+ *     the brand code as an unsigned variable-length integer (0 for no brand, otherwise the position
+ *     in the brand table plus one) and the raw power and electromagnetic emission doubles.</li>
+ * </ul>
+ * Both directions are streaming: the writer makes one pass to collect the brands, translating
+ * {@link BrandDictionary} codes to snapshot codes through an array, and one to write the records,
+ * and the reader creates each appliance straight from its record, so the cost is dominated by
+ * I/O rather than by temporary objects.
+ */
+public final class ApplianceSnapshotCodec {
+    /**
+     * The magic number opening every snapshot ("EAS1" in ASCII).
+     */
+    private static final int MAGIC = 0x45415331;
+
+    /**
+     * The version of the format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The number of appliances sharing one plugged-in bitmap.
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    /**
+     * The size of the buffers used for channels.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The largest number of appliances or brands the reader allocates room for up front. The counts
+     * in the header are not trusted beyond it, so a corrupted header fails with an end-of-file
+     * error rather than an {@link OutOfMemoryError}; larger snapshots grow the set as they are read.
+     */
+    private static final int MAX_PRESIZE = 1 << 20;
+
+    /**
+     * The type tags of the appliance classes.
+     */
+    static final byte TAG_ELECTRIC_STOVE = 1;
+    static final byte TAG_HAIRDRYER = 2;
+    static final byte TAG_MICROWAVE = 3;
+    static final byte TAG_VACUUM_CLEANER = 4;
+    static final byte TAG_WASHING_MACHINE = 5;
+
+    /**
+     * The appliance classes, indexed by type tag.
+     */
+    private static final Class<?>[] CLASSES = {
+            null, ElectricStove.class, Hairdryer.class, Microwave.class, VacuumCleaner.class, WashingMachine.class};
+
+    private ApplianceSnapshotCodec() {
+    }
+
+    /**
+     * Writes a snapshot of the appliances to the channel. The channel is not closed.
+     *
+     * @param appliances The appliances to save.
+     * @param channel    The destination channel.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if an appliance is not of one of the five known types.
+     */
+    public static void write(Collection<? extends ElectricalAppliance> appliances, WritableByteChannel channel)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+        write(appliances, out);
+        out.flush();
+    }
+
+    /**
+     * Writes a snapshot of the appliances. Every appliance is checked in the first pass,
+     * so an unsupported one fails the call before anything is written.
+     *
+     * @param appliances The appliances to save.
+     * @param out        The destination.
+     * @throws IOException if writing fails.
+     * @throws IllegalArgumentException if an appliance is not of one of the five known types.
+     */
+    public static void write(Collection<? extends ElectricalAppliance> appliances, DataOutput out)
+            throws IOException {
+        int[] brandCodes = new int[Math.max(16, BrandDictionary.size())];
+        List<String> brands = new ArrayList<>();
+        int count = 0;
+        for (ElectricalAppliance appliance : appliances) {
+            tagOf(appliance);
+            int code = appliance.getBrandCode();
+            if (code != BrandDictionary.NO_BRAND) {
+                if (code >= brandCodes.length) {
+                    brandCodes = Arrays.copyOf(brandCodes, Math.max(code + 1, brandCodes.length * 2));
+                }
+                if (brandCodes[code] == 0) {
+                    brands.add(appliance.getBrand());
+                    brandCodes[code] = brands.size();
+                }
+            }
+            count++;
+        }
+
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(count);
+        out.writeInt(brands.size());
+        for (String brand : brands) {
+            out.writeUTF(brand);
+        }
+
+        ElectricalAppliance[] block = new ElectricalAppliance[BLOCK_SIZE];
+        int filled = 0;
+        for (ElectricalAppliance appliance : appliances) {
+            block[filled++] = appliance;
+            if (filled == BLOCK_SIZE) {
+                writeBlock(block, filled, brandCodes, out);
+                filled = 0;
+            }
+        }
+        if (filled > 0) {
+            writeBlock(block, filled, brandCodes, out);
+        }
+    }
+
+    /**
+     * Writes one block of appliances, preceded by its plugged-in bitmap.
+     */
+    private static void writeBlock(ElectricalAppliance[] block, int length, int[] brandCodes,
+                                   DataOutput out) throws IOException {
+        long plugged = 0;
+        for (int i = 0; i < length; i++) {
+            if (block[i].isPluggedIn()) {
+                plugged |= 1L << i;
+            }
+        }
+        out.writeLong(plugged);
+        for (int i = 0; i < length; i++) {
+            ElectricalAppliance appliance = block[i];
+            out.writeByte(tagOf(appliance));
+            int code = appliance.getBrandCode();
+            writeVarInt(code == BrandDictionary.NO_BRAND ? 0 : brandCodes[code], out);
+            out.writeDouble(appliance.getPower());
+            out.writeDouble(appliance.getElectromagneticEmission());
+            block[i] = null;
+        }
+    }
+
+    /**
+     * Reads a snapshot from the channel. The channel is not closed.
+     *
+     * @param channel The source channel.
+     * @return a set holding the saved appliances, presized to their number up to a limit.
+     * @throws IOException if reading fails or the data is not a valid snapshot.
+     */
+    public static ElectricalApplianceSet<ElectricalAppliance> read(ReadableByteChannel channel) throws IOException {
+        return read((DataInput) new DataInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE)));
+    }
+
+    /**
+     * Reads a snapshot.
+     *
+     * @param in The source.
+     * @return a set holding the saved appliances, presized to their number up to a limit.
+     * @throws IOException if reading fails or the data is not a valid snapshot.
+     */
+    public static ElectricalApplianceSet<ElectricalAppliance> read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new StreamCorruptedException("Not an appliance snapshot.");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported snapshot version: " + version);
+        }
+        int count = in.readInt();
+        int brandCount = in.readInt();
+        if (count < 0 || brandCount < 0) {
+            throw new StreamCorruptedException("Negative count in snapshot header.");
+        }
+        List<String> brandTable = new ArrayList<>(Math.min(brandCount, MAX_PRESIZE) + 1);
+        brandTable.add(null);
+        for (int i = 0; i < brandCount; i++) {
+            brandTable.add(in.readUTF());
+        }
+        String[] brands = brandTable.toArray(new String[0]);
+
+        ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>(Math.min(count, MAX_PRESIZE));
+        for (int read = 0; read < count; ) {
+            long plugged = in.readLong();
+            int length = Math.min(BLOCK_SIZE, count - read);
+            for (int i = 0; i < length; i++) {
+                byte tag = in.readByte();
+                int brandCode = readVarInt(in);
+                if (brandCode < 0 || brandCode >= brands.length) {
+                    throw new StreamCorruptedException("Unknown brand code: " + brandCode);
+                }
+                set.add(create(tag, brands[brandCode], in.readDouble(), in.readDouble(),
+                        (plugged & (1L << i)) != 0));
+            }
+            read += length;
+        }
+        return set;
+    }
+
+    /**
+     * @return the type tag of the appliance.
+     * @throws IllegalArgumentException if the appliance is not of one of the five known types.
+     */
+    static byte tagOf(ElectricalAppliance appliance) {
+        byte tag = tagOrZero(appliance);
+        if (tag == 0) {
+            throw new IllegalArgumentException("Unsupported appliance type: " + appliance.getClass().getName());
+        }
+        return tag;
+    }
+
+    /**
+     * Returns the type tag of the appliance. Subclasses of the five appliance classes have the type
+     * of the class they derive from, but would be read back as instances of that class and so not
+     * equal to the saved appliances; they have no tag.
+     *
+     * @return the type tag of the appliance, or 0 if it is not exactly of one of the five known types.
+     */
+    static byte tagOrZero(ElectricalAppliance appliance) {
+        byte tag = switch (appliance.getType()) {
+            case ELECTRIC_STOVE -> TAG_ELECTRIC_STOVE;
+            case HAIRDRYER -> TAG_HAIRDRYER;
+            case MICROWAVE -> TAG_MICROWAVE;
+            case VACUUM_CLEANER -> TAG_VACUUM_CLEANER;
+            case WASHING_MACHINE -> TAG_WASHING_MACHINE;
+            case OTHER -> 0;
+        };
+        return appliance.getClass() == CLASSES[tag] ? tag : 0;
+    }
+
+    /**
+     * Creates an appliance of the type denoted by the tag. A plugged-in appliance is restored
+     * without a plug event, see {@link ApplianceType#create}.
+     *
+     * @return the new appliance.
+     * @throws StreamCorruptedException if the tag is unknown.
+     */
+    static ElectricalAppliance create(byte tag, String brand, double power, double emission, boolean pluggedIn)
+            throws StreamCorruptedException {
+        return typeOf(tag).create(brand, power, emission, pluggedIn);
+    }
+
+    /**
+     * @return the appliance type denoted by the tag.
+     * @throws StreamCorruptedException if the tag is unknown.
+     */
+    static ApplianceType typeOf(byte tag) throws StreamCorruptedException {
+        return switch (tag) {
+            case TAG_ELECTRIC_STOVE -> ApplianceType.ELECTRIC_STOVE;
+            case TAG_HAIRDRYER -> ApplianceType.HAIRDRYER;
+            case TAG_MICROWAVE -> ApplianceType.MICROWAVE;
+            case TAG_VACUUM_CLEANER -> ApplianceType.VACUUM_CLEANER;
+            case TAG_WASHING_MACHINE -> ApplianceType.WASHING_MACHINE;
+            default -> throw new StreamCorruptedException("Unknown appliance type tag: " + tag);
+        };
+    }
+
+    /**
+     * Writes a non-negative integer in 7-bit groups, least significant first.
+     */
+    private static void writeVarInt(int value, DataOutput out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads an integer written by {@link #writeVarInt}.
+     */
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable-length integer.");
+    }
+}
@@ -0,0 +1,240 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe counterpart of {@link ElectricalApplianceSet} for registries shared between threads.
+ * This set does not allow duplicate elements or null values.
+ * <p>
+ * The elements are kept in a {@link ConcurrentHashMap} key set. Inserts into empty bins are
+ * made with a compare-and-set and other updates lock only the affected bin, so concurrent
+ * {@link #add} and {@link #remove} calls on different elements do not block each other,
+ * and {@link #contains} never locks. Iterators are weakly consistent: they never throw
+ * {@link java.util.ConcurrentModificationException} and reflect some, but not necessarily all,
+ * of the changes made after their creation. Unlike {@link ElectricalApplianceSet},
+ * iteration order is not the insertion order.
+ *
+ * @param <T> A type parameter that extends {@link electrical_appliances.ElectricalAppliance}.
+ */
+public class ConcurrentElectricalApplianceSet<T extends ElectricalAppliance> implements Set<T> {
+    /**
+     * The concurrent hash set holding the elements.
+     */
+    private final Set<T> elements;
+
+    /**
+     * Default constructor to initialize an empty set.
+     */
+    public ConcurrentElectricalApplianceSet() {
+        this.elements = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Constructor to create a set and add an initial appliance.
+     *
+     * @param appliance The initial appliance to add to the set.
+     */
+    public ConcurrentElectricalApplianceSet(T appliance) {
+        this();
+        add(appliance);
+    }
+
+    /**
+     * Constructor to create a set from a collection of appliances.
+     *
+     * @param appliances A collection of appliances to add to the set.
+     */
+    public ConcurrentElectricalApplianceSet(Collection<? extends T> appliances) {
+        this.elements = ConcurrentHashMap.newKeySet(appliances.size());
+        addAll(appliances);
+    }
+
+    /**
+     * @return the number of elements in the set; under concurrent updates this is an estimate.
+     */
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * @return {@code true} if the set contains no elements.
+     */
+    @Override
+    public boolean isEmpty() {
+        return elements.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if the set contains the specified element.
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        return elements.contains(o);
+    }
+
+    /**
+     * @return a weakly consistent iterator over the elements in the set.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return elements.iterator();
+    }
+
+    /**
+     * @return an array containing all the elements in the set.
+     */
+    @Override
+    public Object[] toArray() {
+        return elements.toArray(new ElectricalAppliance[0]);
+    }
+
+    /**
+     * @return an array containing all the elements in the set;
+     * the runtime type of the returned array is that of the specified array.
+     */
+    @Override
+    public <U> U[] toArray(U[] a) {
+        return elements.toArray(a);
+    }
+
+    /**
+     * Adds the specified appliance to the set if it is not present.
+     *
+     * @param appliance The appliance to be added.
+     * @return {@code true} if the appliance was added.
+     */
+    @Override
+    public boolean add(T appliance) {
+        if (appliance == null) return false;
+        return elements.add(appliance);
+    }
+
+    /**
+     * Removes the specified element from the set if it is present.
+     *
+     * @return {@code true} if the specified element was removed.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        return elements.remove(o);
+    }
+
+    /**
+     * @return {@code true} if the set contains all the elements of the specified collection.
+     */
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object appliance : c) {
+            if (!contains(appliance)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all the elements in the specified collection to this set.
+     * The operation is not atomic: other threads may see some of the elements before the others.
+     *
+     * @return {@code true} if any of the elements from the specified collection was added.
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> appliances) {
+        boolean modified = false;
+        for (T appliance : appliances) {
+            if (add(appliance)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Removes from the set all of its elements that are not contained in the specified collection.
+     * The operation is not atomic.
+     *
+     * @return {@code true} if any elements were removed.
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return elements.retainAll(c);
+    }
+
+    /**
+     * Removes from the set all of its elements that are contained in the specified collection.
+     * The operation is not atomic.
+     *
+     * @return {@code true} if any elements were removed.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        boolean modified = false;
+        for (Object appliance : c) {
+            if (remove(appliance)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * Removes all the elements of the set that satisfy the specified predicate.
+     * The operation is not atomic.
+     *
+     * @return {@code true} if any elements were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        return elements.removeIf(filter);
+    }
+
+    /**
+     * Removes all the elements from the set.
+     */
+    @Override
+    public void clear() {
+        elements.clear();
+    }
+
+    /**
+     * Compares the specified object with this set for equality, as defined by {@link Set#equals}.
+     *
+     * @return {@code true} if the specified object is a set with the same elements.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o == this || elements.equals(o);
+    }
+
+    /**
+     * @return the sum of the hash codes of the elements, as defined by {@link Set#hashCode}.
+     */
+    @Override
+    public int hashCode() {
+        return elements.hashCode();
+    }
+
+    /**
+     * @return a string representation of the set in the format "{ element1; element2; ... }".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("\n{ ");
+        Iterator<T> it = elements.iterator();
+        while (it.hasNext()) {
+            sb.append(it.next());
+            if (it.hasNext()) {
+                sb.append("; ");
+            }
+        }
+        sb.append(" }");
+        return sb.toString();
+    }
+}
@@ -1,13 +1,40 @@
+import electrical_appliances.ApplianceFactory;
+import electrical_appliances.ApplianceType;
 import electrical_appliances.ElectricalAppliance;
+import electrical_appliances.PlugListener;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
 /**
  * A custom implementation of the {@link Set} interface to handle collections of electrical appliances.
  * This set does not allow duplicate elements or null values.
+ * <p>
+ * Elements are kept in a dense, insertion-ordered array. Next to it the set maintains an
+ * open-addressing hash index (linear probing) that maps each element to its slot in that
+ * array, so {@link #add}, {@link #contains} and {@link #remove} run in O(1) on average.
+ * Removal leaves a hole in the dense array instead of shifting the tail; holes are
+ * skipped during iteration and squeezed out once they make up a large part of the array.
+ * <p>
+ * Lookups, adds, resizes and the bulk operations report to {@link ApplianceSetMetrics}
+ * when metrics are enabled; otherwise the instrumentation costs nothing.
  *
  * @param <T> A type parameter that extends {@link electrical_appliances.ElectricalAppliance}.
  */
@@ -18,26 +45,159 @@ public class ElectricalApplianceSet<T extends ElectricalAppliance> implements Se
     private static final int INITIAL_CAPACITY = 15;
 
     /**
-     * The capacity increment factor used to increase the array size.
+     * The capacity increment factor used to increase the array size by the default growth policy.
+     * A full array is compacted instead of grown when at least this share of it is taken by holes.
      */
     private static final double CAPACITY_INCREMENT = 0.3;
 
     /**
-     * The internal array to store elements in the set.
+     * The multiplier used to spread hash codes over the index (the 32-bit golden ratio).
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * The largest argument of a bulk operation that is searched as is when it is not a {@link Set};
+     * larger ones are first copied into a temporary {@link HashSet}.
+     */
+    private static final int LINEAR_LOOKUP_THRESHOLD = 16;
+
+    /**
+     * The internal array to store elements in the set, in insertion order.
+     * Slots of removed elements are {@code null} until the array is compacted.
      */
     private T[] elements;
 
+    /**
+     * The hash codes of the elements, stored at the same positions as in {@link #elements}.
+     */
+    private int[] hashes;
+
+    /**
+     * The open-addressing hash index. Each non-zero entry is a position in {@link #elements}
+     * plus one, so that zero can mark an empty bucket. Its length is a power of two
+     * and at least twice the length of {@link #elements}.
+     */
+    private int[] index;
+
+    /**
+     * The shift applied to a spread hash code to get its home bucket in {@link #index}.
+     */
+    private int indexShift;
+
     /**
      * The current size of the set.
      */
     private int size;
 
+    /**
+     * The number of used slots in {@link #elements}, including the holes left by removals.
+     */
+    private int end;
+
+    /**
+     * The number of structural modifications made to the set, used by iterators to fail fast.
+     */
+    private int modCount;
+
+    /**
+     * The policy deciding how much the internal array grows when it is full.
+     */
+    private final GrowthPolicy growthPolicy;
+
+    /**
+     * The columnar copy of the numeric properties of the elements,
+     * or {@code null} until it is first requested through {@link #columns()}.
+     */
+    private ApplianceColumns columns;
+
+    /**
+     * The elements grouped by brand, or {@code null} until first queried through {@link #byBrand(String)}.
+     */
+    private SecondaryIndex<String, T> brandIndex;
+
+    /**
+     * The elements grouped by concrete class, or {@code null} until first queried through {@link #byType(Class)}.
+     */
+    private SecondaryIndex<Class<?>, T> typeIndex;
+
+    /**
+     * The elements partitioned by appliance type, or {@code null} until first queried through
+     * {@link #byType(ApplianceType)} or {@link #partitionByType()}.
+     */
+    private TypePartition<T> typePartition;
+
+    /**
+     * The elements sorted by power consumption, or {@code null} until first queried.
+     */
+    private RangeIndex<T> powerIndex;
+
+    /**
+     * The elements sorted by electromagnetic emission, or {@code null} until first queried.
+     */
+    private RangeIndex<T> emissionIndex;
+
+    /**
+     * The running totals over the plugged-in elements, kept while the plug events are tracked,
+     * otherwise {@code null}.
+     */
+    private PlugTotals plugTotals;
+
+    /**
+     * The listeners registered with the elements to receive their plug events, one per element,
+     * or {@code null} while none of the columns, the plug totals and the change feed need them.
+     */
+    private IdentityHashMap<T, PlugTracker> plugTrackers;
+
+    /**
+     * Set by every plug event, and cleared when the plugging status in the columns is refreshed.
+     */
+    private volatile boolean pluggingChanged;
+
+    /**
+     * The persistent copy of the elements that snapshots are taken from,
+     * or {@code null} until {@link #snapshot()} is first called.
+     */
+    private PersistentApplianceSet.Builder<T> persistent;
+
+    /**
+     * The change feed, or {@code null} until {@link #changes()} is first called.
+     */
+    private volatile ApplianceChangeFeed<T> changeFeed;
+
     /**
      * Default constructor to initialize the set with the default capacity.
      */
-    @SuppressWarnings("unchecked")
     public ElectricalApplianceSet() {
-        this.elements = (T[]) new ElectricalAppliance[INITIAL_CAPACITY];
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor to create a set that can hold the specified number of elements without growing.
+     *
+     * @param expectedSize The number of elements the set is expected to hold.
+     * @throws IllegalArgumentException if the expected size is negative.
+     */
+    public ElectricalApplianceSet(int expectedSize) {
+        this(expectedSize, GrowthPolicy.DEFAULT);
+    }
+
+    /**
+     * Constructor to create a set that can hold the specified number of elements without growing
+     * and grows according to the specified policy afterwards.
+     *
+     * @param expectedSize The number of elements the set is expected to hold.
+     * @param growthPolicy The policy deciding how much the set grows when it is full.
+     * @throws IllegalArgumentException if the expected size is negative.
+     */
+    public ElectricalApplianceSet(int expectedSize, GrowthPolicy growthPolicy) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size cannot be negative: " + expectedSize);
+        }
+        if (growthPolicy == null) {
+            throw new NullPointerException();
+        }
+        this.growthPolicy = growthPolicy;
+        allocate(expectedSize);
         this.size = 0;
     }
 
@@ -57,232 +217,1589 @@ public class ElectricalApplianceSet<T extends ElectricalAppliance> implements Se
      * @param appliances A collection of appliances to add to the set.
      */
     public ElectricalApplianceSet(Collection<? extends T> appliances) {
-        this();
+        this(Math.max(appliances.size(), INITIAL_CAPACITY));
         addAll(appliances);
     }
 
     /**
-     * Ensures there is enough capacity in the internal array to add more elements.
-     * If the current capacity is insufficient, the array is resized.
+     * A policy deciding the new capacity of the internal array when it has to grow.
      */
-    @SuppressWarnings("unchecked")
-    private void ensureCapacity() {
-        if (size == elements.length) {
-            int newCapacity = (int) (elements.length + elements.length * CAPACITY_INCREMENT);
-            T[] newElements = (T[]) new ElectricalAppliance[newCapacity];
-            System.arraycopy(elements, 0, newElements, 0, elements.length);
-            elements = newElements;
+    @FunctionalInterface
+    public interface GrowthPolicy {
+        /**
+         * The default policy, growing the array by 30% of its length.
+         */
+        GrowthPolicy DEFAULT = geometric(1 + CAPACITY_INCREMENT);
+
+        /**
+         * Computes the new capacity of the internal array.
+         *
+         * @param capacity    The current capacity.
+         * @param minCapacity The smallest acceptable new capacity; always greater than the current one.
+         * @return the new capacity, at least {@code minCapacity}.
+         */
+        int grow(int capacity, int minCapacity);
+
+        /**
+         * Returns a policy multiplying the capacity by the specified factor, such as 1.5 or 2.
+         *
+         * @param factor The growth factor; must be greater than 1.
+         * @return the geometric growth policy.
+         */
+        static GrowthPolicy geometric(double factor) {
+            if (!(factor > 1)) {
+                throw new IllegalArgumentException("Growth factor must be greater than 1: " + factor);
+            }
+            return (capacity, minCapacity) ->
+                    (int) Math.min(Integer.MAX_VALUE - 8, Math.max(minCapacity, (long) (capacity * factor)));
+        }
+
+        /**
+         * Returns a policy adding a fixed number of slots to the capacity.
+         *
+         * @param chunk The number of slots to add; must be positive.
+         * @return the fixed-chunk growth policy.
+         */
+        static GrowthPolicy fixedChunk(int chunk) {
+            if (chunk <= 0) {
+                throw new IllegalArgumentException("Chunk size must be positive: " + chunk);
+            }
+            return (capacity, minCapacity) ->
+                    (int) Math.min(Integer.MAX_VALUE - 8, Math.max(minCapacity, (long) capacity + chunk));
         }
     }
 
     /**
-     * @return the number of elements in the set.
+     * Creates a set filled with appliances generated in parallel by the specified factory.
+     * The storage is allocated for all of them up front, so the set never grows while it is filled.
+     *
+     * @param factory The factory generating the appliances.
+     * @param count   The number of appliances to generate.
+     * @return a set holding the generated appliances.
      */
-    @Override
-    public int size() {
-        return size;
+    public static ElectricalApplianceSet<ElectricalAppliance> generate(ApplianceFactory factory, int count) {
+        ElectricalAppliance[] appliances = factory.generate(count);
+        ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>(appliances.length);
+        for (ElectricalAppliance appliance : appliances) {
+            set.add(appliance);
+        }
+        return set;
     }
 
     /**
-     * @return {@code true} if the set contains no elements.
+     * Allocates empty storage able to hold the specified number of elements.
+     *
+     * @param capacity The length of the new element array.
      */
-    @Override
-    public boolean isEmpty() {
-        return size == 0;
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        elements = (T[]) new ElectricalAppliance[capacity];
+        hashes = new int[capacity];
+        allocateIndex(capacity);
+        end = 0;
+        if (columns != null) {
+            columns.allocate(capacity);
+        }
     }
 
     /**
-     * @return {@code true} if the set contains the specified element.
+     * Allocates an empty hash index suitable for the specified element capacity.
+     *
+     * @param capacity The length of the element array the index has to cover.
      */
-    @Override
-    public boolean contains(Object o) {
-        if (o == null) return false;
-        for (int i = 0; i < size; i++) {
-            if (elements[i].equals(o)) {
-                return true;
+    private void allocateIndex(int capacity) {
+        int buckets = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1) << 1;
+        index = new int[buckets];
+        indexShift = Integer.numberOfLeadingZeros(buckets) + 1;
+    }
+
+    /**
+     * Ensures there is enough capacity in the internal array to add more elements.
+     * If the array is full, it is either compacted (when enough of it is taken by holes)
+     * or resized according to the growth policy.
+     */
+    private void ensureCapacity() {
+        if (end == elements.length) {
+            if (end > size && end - size >= (int) (elements.length * CAPACITY_INCREMENT)) {
+                compact();
+                return;
             }
+            resize(growthPolicy.grow(elements.length, size + 1));
         }
-        return false;
     }
 
     /**
-     * @return an iterator over the elements in the set.
+     * Ensures that the set can hold at least the specified number of elements without growing.
+     * Unlike automatic growth, the internal array is resized to exactly the requested capacity.
+     *
+     * @param minCapacity The number of elements the set has to be able to hold.
      */
-    @Override
-    public Iterator<T> iterator() {
-        return new Iterator<>() {
-            private int index = 0;
-
-            /**
-             * @return {@code true} if next element is available.
-             */
-            @Override
-            public boolean hasNext() {
-                return index < size;
-            }
-
-            /**
-             * @return the next element.
-             * @throws NoSuchElementException if no more elements are available.
-             */
-            @Override
-            public T next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                return elements[index++];
-            }
-        };
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > elements.length) {
+            resize(minCapacity);
+        } else if (end + (minCapacity - size) > elements.length) {
+            compact();
+        }
     }
 
     /**
-     * @return an array containing all the elements in the set.
+     * Shrinks the internal storage to the current number of elements.
      */
-    @SuppressWarnings("unchecked")
-    @Override
-    public Object[] toArray() {
-        T[] result = (T[]) new ElectricalAppliance[size];
-        System.arraycopy(elements, 0, result, 0, size);
-        return result;
+    public void trimToSize() {
+        if (elements.length > size) {
+            resize(size);
+        }
     }
 
     /**
-     * @return an array containing all the elements in the set;
-     * the runtime type of the returned array is that of the specified array.
+     * Replaces the internal storage with storage of the specified capacity,
+     * compacting the elements on the way.
+     *
+     * @param newCapacity The new length of the element array; at least {@link #size}.
      */
     @SuppressWarnings("unchecked")
-    @Override
-    public <U> U[] toArray(U[] a) {
-        if (a.length < size) {
-            return (U[]) toArray();
+    private void resize(int newCapacity) {
+        long start = ApplianceSetMetrics.ENABLED ? System.nanoTime() : 0;
+        squeeze();
+        T[] newElements = (T[]) new ElectricalAppliance[newCapacity];
+        int[] newHashes = new int[newCapacity];
+        System.arraycopy(elements, 0, newElements, 0, end);
+        System.arraycopy(hashes, 0, newHashes, 0, end);
+        elements = newElements;
+        hashes = newHashes;
+        allocateIndex(newCapacity);
+        rebuildIndex();
+        if (columns != null) {
+            columns.grow(newCapacity);
         }
-        System.arraycopy(elements, 0, a, 0, size);
-        if (a.length > size) {
-            a[size] = null;
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.resize(end, System.nanoTime() - start);
         }
-        return a;
     }
 
     /**
-     * Adds the specified appliance to the set if it is not present.
+     * Moves all elements to the front of the internal array, removing the holes
+     * left by removals, and rebuilds the hash index.
+     */
+    private void compact() {
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.compaction();
+        }
+        squeeze();
+        rebuildIndex();
+    }
+
+    /**
+     * Moves all elements to the front of the internal array, removing the holes left by removals.
+     * The hash index is not updated and has to be rebuilt afterwards.
+     */
+    private void squeeze() {
+        if (end == size) {
+            return;
+        }
+        int w = 0;
+        for (int r = 0; r < end; r++) {
+            if (elements[r] != null) {
+                moveSlot(r, w++);
+            }
+        }
+        truncate(w);
+    }
+
+    /**
+     * Moves an element to a free slot of the internal array that comes before it.
+     * The hash index is not updated and has to be rebuilt afterwards.
      *
-     * @param appliance The appliance to be added.
-     * @return {@code true} if the appliance was added.
+     * @param from The slot of the element.
+     * @param to   The free slot to move it to; may be the same slot.
      */
-    @Override
-    public boolean add(T appliance) {
-        if (appliance == null || contains(appliance)) {
-            return false;
+    private void moveSlot(int from, int to) {
+        if (from == to) {
+            return;
+        }
+        elements[to] = elements[from];
+        hashes[to] = hashes[from];
+        elements[from] = null;
+        if (columns != null) {
+            columns.move(from, to);
         }
-        ensureCapacity();
-        elements[size++] = appliance;
-        return true;
     }
 
     /**
-     * Removes the specified element from the set if it is present.
+     * Frees all slots of the internal array from the specified one onwards.
      *
-     * @return {@code true} if the specified element was removed.
+     * @param newEnd The new number of used slots.
      */
-    @Override
-    public boolean remove(Object o) {
-        if (o == null) return false;
-        for (int i = 0; i < size; i++) {
-            if (elements[i].equals(o)) {
-                System.arraycopy(elements, i + 1, elements, i, size - i - 1);
-                elements[--size] = null;
-                return true;
-            }
+    private void truncate(int newEnd) {
+        Arrays.fill(elements, newEnd, end, null);
+        end = newEnd;
+        if (columns != null) {
+            columns.truncate(newEnd);
         }
-        return false;
     }
 
     /**
-     * @return {@code true} if the set contains all the elements of the specified collection.
+     * Compacts the internal array once holes outnumber the elements,
+     * which keeps both iteration and the amortized cost of removal linear.
      */
-    @Override
-    public boolean containsAll(Collection<?> c) {
-        for (Object appliance : c) {
-            if (!contains(appliance)) {
-                return false;
+    private void compactIfSparse() {
+        int used = end;
+        while (used > 0 && elements[used - 1] == null) {
+            used--;
+        }
+        truncate(used);
+        if (end - size > size) {
+            compact();
+        }
+    }
+
+    /**
+     * Clears the hash index and fills it again from the occupied slots of the internal array.
+     */
+    private void rebuildIndex() {
+        Arrays.fill(index, 0);
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != null) {
+                insertIntoIndex(i);
             }
         }
-        return true;
     }
 
     /**
-     * Adds all the elements in the specified collection to this set.
+     * @return the home bucket in the hash index for the specified hash code.
+     */
+    private int bucket(int hash) {
+        return (hash * HASH_MULTIPLIER) >>> indexShift;
+    }
+
+    /**
+     * Puts the element stored at the specified slot of the internal array into the hash index.
      *
-     * @return {@code true} if all the elements from the specified collection was added.
+     * @param slot The position of the element in the internal array.
      */
-    @Override
-    public boolean addAll(Collection<? extends T> appliances) {
-        boolean modified = false;
-        for (T appliance : appliances) {
-            if (add(appliance)) {
-                modified = true;
+    private void insertIntoIndex(int slot) {
+        int mask = index.length - 1;
+        int i = bucket(hashes[slot]);
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+
+    /**
+     * Looks up the specified object in the hash index.
+     *
+     * @param o    The object to look for; must not be {@code null}.
+     * @param hash The hash code of the object.
+     * @return the bucket in the hash index that refers to an equal element, or {@code -1}.
+     */
+    private int find(Object o, int hash) {
+        int mask = index.length - 1;
+        int probes = 0;
+        for (int i = bucket(hash); ; i = (i + 1) & mask) {
+            probes++;
+            int entry = index[i];
+            if (entry == 0) {
+                if (ApplianceSetMetrics.ENABLED) {
+                    ApplianceSetMetrics.lookup(probes, false);
+                }
+                return -1;
+            }
+            int slot = entry - 1;
+            if (hashes[slot] == hash && elements[slot].equals(o)) {
+                if (ApplianceSetMetrics.ENABLED) {
+                    ApplianceSetMetrics.lookup(probes, true);
+                }
+                return i;
             }
         }
-        return modified;
     }
 
     /**
-     * Removes from the set all of its elements that are not contained in the specified collection.
+     * @return the bucket in the hash index that refers to the specified occupied slot of the internal array.
+     */
+    private int bucketOfSlot(int slot) {
+        int mask = index.length - 1;
+        int i = bucket(hashes[slot]);
+        while (index[i] != slot + 1) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Removes the element referenced by the specified bucket of the hash index.
+     * The slot of the element in the internal array becomes a hole; the index is repaired
+     * with backward-shift deletion so that no tombstones are needed there.
      *
-     * @return {@code true} if all the elements not from the specified collection was removed.
+     * @param bucket The bucket in the hash index, as returned by {@link #find}.
      */
-    @Override
-    public boolean retainAll(Collection<?> c) {
-        boolean modified = false;
-        for (int i = 0; i < size; i++) {
-            if (!c.contains(elements[i])) {
-                remove(elements[i--]);
-                modified = true;
+    private void removeAt(int bucket) {
+        int slot = index[bucket] - 1;
+        unindex(elements[slot]);
+        elements[slot] = null;
+        if (columns != null) {
+            columns.clear(slot);
+        }
+        size--;
+        modCount++;
+
+        int mask = index.length - 1;
+        int hole = bucket;
+        for (int i = (hole + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int home = bucket(hashes[index[i] - 1]);
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                hole = i;
             }
         }
-        return modified;
+        index[hole] = 0;
     }
 
     /**
-     * Removes from the set all of its elements that are contained in the specified collection.
+     * Copies the elements of the set, in iteration order, to the beginning of the specified array.
      *
-     * @return {@code true} if all the elements from the specified collection was removed.
+     * @param dest The array to copy into; must have room for {@link #size} elements.
      */
-    @Override
-    public boolean removeAll(Collection<?> c) {
-        boolean modified = false;
-        for (Object appliance : c) {
-            if (remove(appliance)) {
-                modified = true;
+    private void copyTo(Object[] dest) {
+        if (end == size) {
+            System.arraycopy(elements, 0, dest, 0, size);
+            return;
+        }
+        int w = 0;
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != null) {
+                dest[w++] = elements[i];
             }
         }
-        return modified;
     }
 
     /**
-     * Removes all the elements from the set.
+     * @return the number of elements in the set.
      */
-    @SuppressWarnings("unchecked")
     @Override
-    public void clear() {
-        elements = (T[]) new ElectricalAppliance[INITIAL_CAPACITY];
-        size = 0;
+    public int size() {
+        return size;
     }
 
     /**
-     * @return a string representation of the set in the format "{ element1; element2; ... }".
+     * @return {@code true} if the set contains no elements.
      */
     @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder("\n{ ");
-        for (int i = 0; i < size; i++) {
-            sb.append(elements[i]);
-            if (i < size - 1) {
-                sb.append("; ");
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return {@code true} if the set contains the specified element.
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) return false;
+        return find(o, o.hashCode()) >= 0;
+    }
+
+    /**
+     * @return an iterator over the elements in the set.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * An iterator over the internal array that skips holes and fails fast on concurrent modification.
+     * {@link #remove()} only leaves a hole behind and runs in O(1); the holes are squeezed out by
+     * the next modification of the set that compacts, never by the iterator itself, since moving
+     * elements would go unnoticed by other live iterators.
+     */
+    private class Itr implements Iterator<T> {
+        /**
+         * The slot of the next element to return.
+         */
+        private int cursor = skipHoles(0);
+
+        /**
+         * The slot of the last element returned, or {@code -1} if it was removed or none was returned yet.
+         */
+        private int lastReturned = -1;
+
+        /**
+         * The {@link #modCount} the iterator expects; any other value means a concurrent modification.
+         */
+        private int expectedModCount = modCount;
+
+        /**
+         * @return {@code true} if next element is available.
+         */
+        @Override
+        public boolean hasNext() {
+            return cursor < end;
+        }
+
+        /**
+         * @return the next element.
+         * @throws NoSuchElementException if no more elements are available.
+         * @throws ConcurrentModificationException if the set was modified other than through this iterator.
+         */
+        @Override
+        public T next() {
+            checkForComodification();
+            if (!hasNext()) {
+                throw new NoSuchElementException();
             }
+            lastReturned = cursor;
+            cursor = skipHoles(cursor + 1);
+            return elements[lastReturned];
         }
-        sb.append(" }");
-        return sb.toString();
+
+        /**
+         * Removes the last element returned by {@link #next()} from the set.
+         *
+         * @throws IllegalStateException if {@link #next()} was not called or the element was already removed.
+         * @throws ConcurrentModificationException if the set was modified other than through this iterator.
+         */
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(bucketOfSlot(lastReturned));
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the set was modified other than through this iterator.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Creates a late-binding spliterator over the elements in the set: it covers the elements
+     * present when it is first traversed, split or sized, not when it is created, and fails fast
+     * if the set is modified after that. The set is not modified: when the internal array has no
+     * holes, the spliterator covers a contiguous range and splits exactly in halves, which lets
+     * parallel streams divide the work evenly; otherwise it skips the holes and its halves only
+     * estimate their sizes.
+     *
+     * @return a {@link Spliterator} reporting {@link Spliterator#SIZED}, {@link Spliterator#DISTINCT},
+     * {@link Spliterator#NONNULL} and {@link Spliterator#ORDERED}, and, once bound,
+     * {@link Spliterator#SUBSIZED} if the internal array has no holes.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new ApplianceSpliterator();
+    }
+
+    /**
+     * A spliterator over a range of the internal array that skips holes.
+     * The spliterator returned by {@link #spliterator()} binds to the array, its range and the
+     * {@link #modCount} on first use, like the spliterators of {@link ArrayList}; the ones split
+     * off it are bound from the start. It fails fast if the set is structurally modified after
+     * binding and before the traversal finishes.
+     */
+    private final class ApplianceSpliterator implements Spliterator<T> {
+        /**
+         * The internal array, once bound.
+         */
+        private T[] array;
+
+        /**
+         * The {@link #modCount} the spliterator expects once bound; any other value means a
+         * concurrent modification.
+         */
+        private int expectedModCount;
+
+        /**
+         * Whether the range holds no holes, so that its size is exactly its length;
+         * {@code false} until bound.
+         */
+        private boolean dense;
+
+        /**
+         * The current position in the array.
+         */
+        private int origin;
+
+        /**
+         * The position right after the last element of the range, or {@code -1} until bound.
+         */
+        private int fence;
+
+        /**
+         * The number of elements left in the range: exact if {@link #exact}, otherwise an estimate.
+         */
+        private int estimate;
+
+        /**
+         * Whether {@link #estimate} is the exact number of elements left.
+         */
+        private boolean exact;
+
+        /**
+         * Creates a spliterator over the whole set that binds on first use.
+         */
+        private ApplianceSpliterator() {
+            this.fence = -1;
+            this.exact = true;
+        }
+
+        /**
+         * Creates a bound spliterator over a range of the array.
+         *
+         * @param array            The internal array.
+         * @param expectedModCount The expected {@link #modCount}.
+         * @param origin           The first position of the range.
+         * @param fence            The position right after the last element of the range.
+         * @param estimate         The number of elements in the range, or an estimate of it.
+         * @param exact            Whether the estimate is exact.
+         */
+        private ApplianceSpliterator(T[] array, int expectedModCount, int origin, int fence,
+                                     int estimate, boolean exact) {
+            this.array = array;
+            this.expectedModCount = expectedModCount;
+            this.origin = origin;
+            this.fence = fence;
+            this.estimate = estimate;
+            this.exact = exact;
+            this.dense = exact && estimate == fence - origin;
+        }
+
+        /**
+         * Binds the spliterator to the current state of the set if it is not bound yet.
+         *
+         * @return the fence.
+         */
+        private int getFence() {
+            if (fence < 0) {
+                array = elements;
+                expectedModCount = modCount;
+                fence = end;
+                estimate = size;
+                dense = size == end;
+            }
+            return fence;
+        }
+
+        /**
+         * Splits off the first half of the remaining range.
+         *
+         * @return a spliterator over the first half, or {@code null} if the range is too small to split.
+         */
+        @Override
+        public Spliterator<T> trySplit() {
+            int hi = getFence();
+            int mid = (origin + hi) >>> 1;
+            if (mid <= origin) {
+                return null;
+            }
+            int prefixEstimate = dense ? mid - origin : estimate >>> 1;
+            ApplianceSpliterator prefix = new ApplianceSpliterator(array, expectedModCount, origin, mid,
+                    prefixEstimate, dense);
+            origin = mid;
+            estimate -= prefixEstimate;
+            exact = dense;
+            return prefix;
+        }
+
+        /**
+         * Performs the action on the next element, if any.
+         *
+         * @return {@code false} if no elements remained.
+         */
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            int hi = getFence();
+            T[] a = array;
+            while (origin < hi) {
+                T element = a[origin++];
+                if (element != null) {
+                    if (estimate > 0) {
+                        estimate--;
+                    }
+                    action.accept(element);
+                    checkForComodification();
+                    return true;
+                }
+            }
+            estimate = 0;
+            checkForComodification();
+            return false;
+        }
+
+        /**
+         * Performs the action on each remaining element, reading the array directly.
+         */
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (action == null) {
+                throw new NullPointerException();
+            }
+            int hi = getFence();
+            T[] a = array;
+            int i = origin;
+            origin = hi;
+            estimate = 0;
+            for (; i < hi; i++) {
+                T element = a[i];
+                if (element != null) {
+                    action.accept(element);
+                }
+            }
+            checkForComodification();
+        }
+
+        /**
+         * @return the number of elements left in the range, exact if {@link Spliterator#SIZED} is reported.
+         */
+        @Override
+        public long estimateSize() {
+            getFence();
+            return estimate;
+        }
+
+        /**
+         * @return the characteristics of the spliterator.
+         */
+        @Override
+        public int characteristics() {
+            return (exact ? Spliterator.SIZED : 0) | (dense ? Spliterator.SUBSIZED : 0)
+                    | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED;
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the set was structurally modified.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * @return the first occupied slot of the internal array at or after the specified one,
+     * or {@link #end} if there is none.
+     */
+    private int skipHoles(int from) {
+        while (from < end && elements[from] == null) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * Performs the action for each element of the set, in iteration order,
+     * reading the internal array directly instead of creating an iterator.
+     *
+     * @throws ConcurrentModificationException if the action modifies the set.
+     */
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        T[] a = elements;
+        for (int i = 0, to = end; i < to && modCount == expectedModCount; i++) {
+            if (a[i] != null) {
+                action.accept(a[i]);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Performs the action for each element of the set together with its position in iteration order,
+     * reading the internal array directly instead of creating an iterator.
+     *
+     * @param action The action receiving each element and its position, starting from 0.
+     * @throws ConcurrentModificationException if the action modifies the set.
+     */
+    public void forEachIndexed(ObjIntConsumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int expectedModCount = modCount;
+        T[] a = elements;
+        int position = 0;
+        for (int i = 0, to = end; i < to && modCount == expectedModCount; i++) {
+            if (a[i] != null) {
+                action.accept(a[i], position++);
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    /**
+     * Copies the elements of the set, in iteration order, into a buffer owned by the caller,
+     * so that repeated snapshots of the set need no new arrays. The set itself is not changed.
+     * If the buffer is too small, only as many elements as fit are copied.
+     *
+     * @param reusableBuffer The array to copy the elements into.
+     * @return the number of elements copied.
+     */
+    public int drainTo(T[] reusableBuffer) {
+        if (reusableBuffer.length >= size) {
+            copyTo(reusableBuffer);
+            return size;
+        }
+        int w = 0;
+        for (int i = 0; i < end && w < reusableBuffer.length; i++) {
+            if (elements[i] != null) {
+                reusableBuffer[w++] = elements[i];
+            }
+        }
+        return w;
+    }
+
+    /**
+     * @return an array containing all the elements in the set.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object[] toArray() {
+        T[] result = (T[]) new ElectricalAppliance[size];
+        copyTo(result);
+        return result;
+    }
+
+    /**
+     * @return an array containing all the elements in the set;
+     * the runtime type of the returned array is that of the specified array.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <U> U[] toArray(U[] a) {
+        if (a.length < size) {
+            a = (U[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
+        }
+        copyTo(a);
+        if (a.length > size) {
+            a[size] = null;
+        }
+        return a;
+    }
+
+    /**
+     * Adds the specified appliance to the set if it is not present.
+     *
+     * @param appliance The appliance to be added.
+     * @return {@code true} if the appliance was added.
+     */
+    @Override
+    public boolean add(T appliance) {
+        if (appliance == null) {
+            return false;
+        }
+        int hash = appliance.hashCode();
+        if (find(appliance, hash) >= 0) {
+            if (ApplianceSetMetrics.ENABLED) {
+                ApplianceSetMetrics.add(false);
+            }
+            return false;
+        }
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.add(true);
+        }
+        ensureCapacity();
+        index(appliance);
+        elements[end] = appliance;
+        hashes[end] = hash;
+        if (columns != null) {
+            columns.set(end, appliance);
+        }
+        insertIntoIndex(end++);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the specified element from the set if it is present.
+     *
+     * @return {@code true} if the specified element was removed.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) return false;
+        int bucket = find(o, o.hashCode());
+        if (bucket < 0) {
+            return false;
+        }
+        removeAt(bucket);
+        compactIfSparse();
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the set contains all the elements of the specified collection.
+     */
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        for (Object appliance : c) {
+            if (!contains(appliance)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds all the elements in the specified collection to this set.
+     *
+     * @return {@code true} if all the elements from the specified collection was added.
+     */
+    @Override
+    public boolean addAll(Collection<? extends T> appliances) {
+        long start = ApplianceSetMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean modified = false;
+        for (T appliance : appliances) {
+            if (add(appliance)) {
+                modified = true;
+            }
+        }
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.ADD_ALL.record(System.nanoTime() - start);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes from the set all of its elements that are not contained in the specified collection.
+     *
+     * @return {@code true} if all the elements not from the specified collection was removed.
+     */
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        long start = ApplianceSetMetrics.ENABLED ? System.nanoTime() : 0;
+        Collection<?> lookup = lookupOf(c);
+        boolean modified = removeMatching(appliance -> !lookup.contains(appliance));
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.RETAIN_ALL.record(System.nanoTime() - start);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes from the set all of its elements that are contained in the specified collection.
+     *
+     * @return {@code true} if all the elements from the specified collection was removed.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        long start = ApplianceSetMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean modified = removeAllOf(c);
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.REMOVE_ALL.record(System.nanoTime() - start);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the elements contained in the specified collection, either by looking each of them
+     * up or, when the collection is at least as large as the set, in one pass over the set.
+     *
+     * @return {@code true} if any elements were removed.
+     */
+    private boolean removeAllOf(Collection<?> c) {
+        if (c.size() >= size) {
+            Collection<?> lookup = lookupOf(c);
+            return removeMatching(lookup::contains);
+        }
+        boolean modified = false;
+        for (Object appliance : c) {
+            if (appliance == null) continue;
+            int bucket = find(appliance, appliance.hashCode());
+            if (bucket >= 0) {
+                removeAt(bucket);
+                modified = true;
+            }
+        }
+        compactIfSparse();
+        return modified;
+    }
+
+    /**
+     * Removes all the elements of the set that satisfy the specified predicate.
+     *
+     * @return {@code true} if any elements were removed.
+     */
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        if (filter == null) {
+            throw new NullPointerException();
+        }
+        long start = ApplianceSetMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean modified = removeMatching(filter);
+        if (ApplianceSetMetrics.ENABLED) {
+            ApplianceSetMetrics.REMOVE_IF.record(System.nanoTime() - start);
+        }
+        return modified;
+    }
+
+    /**
+     * Removes the elements that satisfy the specified predicate in a single pass over the
+     * internal array. Each match is removed through the hash index, as by {@link #remove},
+     * so the set stays consistent while the predicate runs: a predicate that queries the set
+     * sees the removals made so far, and one that throws keeps the elements it has not seen.
+     * The holes are squeezed out at the end once they outnumber the elements.
+     *
+     * @param filter The predicate selecting the elements to remove.
+     * @return {@code true} if any elements were removed.
+     * @throws ConcurrentModificationException if the predicate modifies the set.
+     */
+    private boolean removeMatching(Predicate<? super T> filter) {
+        int expectedModCount = modCount;
+        boolean modified = false;
+        try {
+            for (int i = 0; i < end && modCount == expectedModCount; i++) {
+                T element = elements[i];
+                if (element != null && filter.test(element) && modCount == expectedModCount) {
+                    removeAt(bucketOfSlot(i));
+                    expectedModCount = modCount;
+                    modified = true;
+                }
+            }
+        } finally {
+            if (modified) {
+                compactIfSparse();
+            }
+        }
+        if (modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        return modified;
+    }
+
+    /**
+     * @return a collection with the same elements as the specified one that answers
+     * {@code contains} cheaply and does not change while elements are removed from this set:
+     * the collection itself if it is another set or small, otherwise a temporary
+     * {@link HashSet} copy of it.
+     */
+    private Collection<?> lookupOf(Collection<?> c) {
+        if (c != this && (c instanceof Set || c.size() <= LINEAR_LOOKUP_THRESHOLD)) {
+            return c;
+        }
+        return new HashSet<>(c);
+    }
+
+    /**
+     * Returns the columnar companion of the set, which keeps the power, electromagnetic emission
+     * and plugging status of the elements in primitive arrays for fast aggregation.
+     * The columns are built on the first call and maintained by every later modification of the set.
+     * Plug events only mark the plugging status as changed; it is read again from the elements
+     * by the next query of the columns that needs it, on the thread owning the set.
+     *
+     * @return the {@link ApplianceColumns} of the set.
+     */
+    public ApplianceColumns columns() {
+        if (columns == null) {
+            trackPlugging();
+            pluggingChanged = false;
+            ApplianceColumns built = new ApplianceColumns(elements.length, this::refreshPlugging);
+            for (int i = 0; i < end; i++) {
+                if (elements[i] != null) {
+                    built.set(i, elements[i]);
+                }
+            }
+            columns = built;
+        }
+        return columns;
+    }
+
+    /**
+     * Reads the plugging status of the elements into the columns again if a plug event
+     * arrived since the last time.
+     */
+    private void refreshPlugging() {
+        if (!pluggingChanged) {
+            return;
+        }
+        pluggingChanged = false;
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != null) {
+                columns.setPluggedIn(i, elements[i].isPluggedIn());
+            }
+        }
+    }
+
+    /**
+     * @return the number of plugged-in elements, read from a running total in O(1).
+     */
+    public int pluggedInCount() {
+        return plugTotals().count();
+    }
+
+    /**
+     * @return the total power consumption of the plugged-in elements in watts, read from a running total in O(1).
+     */
+    public double pluggedInPower() {
+        return plugTotals().power();
+    }
+
+    /**
+     * @return the largest electromagnetic emission among the plugged-in elements,
+     * or {@link Double#NaN} if none is plugged in.
+     */
+    public double maxPluggedInEmission() {
+        return plugTotals().maxEmission();
+    }
+
+    /**
+     * Returns the running totals over the plugged-in elements. They are computed on the first call
+     * and then updated by every modification of the set and every plug event of its elements.
+     *
+     * @return the plug totals.
+     */
+    private PlugTotals plugTotals() {
+        trackPlugging();
+        return plugTotals;
+    }
+
+    /**
+     * Starts listening to the plug events of the elements and keeping the plug totals,
+     * if not doing so already.
+     */
+    private void trackPlugging() {
+        if (plugTrackers == null) {
+            plugTotals = new PlugTotals();
+            plugTrackers = new IdentityHashMap<>(size);
+            for (int i = 0; i < end; i++) {
+                if (elements[i] != null) {
+                    track(elements[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a tracker with an element entering the set, then accounts for its current status.
+     * A plug event racing with the registration is either seen by the tracker or already visible
+     * in the status, and the tracker counts the element at most once either way.
+     *
+     * @param element The element.
+     */
+    private void track(T element) {
+        PlugTracker tracker = new PlugTracker(element, plugTotals);
+        plugTrackers.put(element, tracker);
+        element.addPlugListener(tracker);
+        tracker.sync();
+    }
+
+    /**
+     * Stops tracking an element leaving the set and withdraws it from the plug totals.
+     *
+     * @param element The element.
+     */
+    private void untrack(T element) {
+        PlugTracker tracker = plugTrackers.remove(element);
+        tracker.retire();
+        element.removePlugListener(tracker);
+    }
+
+    /**
+     * Stops tracking all elements and withdraws them from the plug totals.
+     */
+    private void untrackAll() {
+        for (Map.Entry<T, PlugTracker> entry : plugTrackers.entrySet()) {
+            entry.getValue().retire();
+            entry.getKey().removePlugListener(entry.getValue());
+        }
+        plugTrackers.clear();
+    }
+
+    /**
+     * Stops listening to the plug events of the elements. An element keeps every set that listens
+     * to it reachable and updates it on each plug event, so call this before discarding a set whose
+     * elements live on, once {@link #columns()}, the plugged-in queries or {@link #changes()} have
+     * been used.
+     * <p>
+     * The columns, the plug totals and the change feed depend on the plug events and are dropped:
+     * the next call that needs one of them builds it again from the current elements and listens
+     * again, and the subscribers of the dropped change feed receive no further changes.
+     */
+    public void detach() {
+        if (plugTrackers == null) {
+            return;
+        }
+        untrackAll();
+        plugTrackers = null;
+        columns = null;
+        plugTotals = null;
+        changeFeed = null;
+    }
+
+    /**
+     * Forwards the plug events of one element to the plug totals and the change feed, and marks
+     * the plugging status in the columns as changed. Plug events may come from any thread: the
+     * tracker never looks the element up in the set, the plug totals and the change feed accept
+     * events concurrently, and the columns are refreshed by the thread owning the set.
+     * <p>
+     * The tracker remembers whether it has counted its element in the plug totals, and every
+     * event, like the registration, only brings that in line with the current status of the
+     * element, under the lock of the tracker. Repeated, reordered or late events therefore
+     * cannot count the element twice or leave it counted after it was removed.
+     */
+    private final class PlugTracker implements PlugListener {
+        private final T element;
+        private final PlugTotals totals;
+        private boolean counted;
+        private volatile boolean live = true;
+
+        PlugTracker(T element, PlugTotals totals) {
+            this.element = element;
+            this.totals = totals;
+        }
+
+        /**
+         * Records the new plugging status of the element.
+         */
+        @Override
+        public void plugStateChanged(ElectricalAppliance appliance, boolean pluggedIn) {
+            pluggingChanged = true;
+            sync();
+            ApplianceChangeFeed<T> feed = changeFeed;
+            if (feed != null && live) {
+                feed.publish(pluggedIn ? ApplianceChangeFeed.Kind.PLUGGED_IN : ApplianceChangeFeed.Kind.UNPLUGGED,
+                        element);
+            }
+        }
+
+        /**
+         * Counts the element in the plug totals if, and only if, it is in the set and plugged in.
+         */
+        synchronized void sync() {
+            boolean plugged = live && element.isPluggedIn();
+            if (plugged != counted) {
+                counted = plugged;
+                if (plugged) {
+                    totals.plugged(element);
+                } else {
+                    totals.unplugged(element);
+                }
+            }
+        }
+
+        /**
+         * Withdraws the element, which is leaving the set, from the plug totals for good.
+         */
+        synchronized void retire() {
+            live = false;
+            sync();
+        }
+    }
+
+    /**
+     * Returns the change feed of the set, which publishes the additions, removals and clearing of
+     * the set and the plug events of its elements to {@link java.util.concurrent.Flow.Subscriber}s
+     * in batches. The feed is created on the first call; from then on every modification of the
+     * set appends an event to its ring buffer, which costs O(1) and never blocks.
+     *
+     * @return the change feed.
+     */
+    public ApplianceChangeFeed<T> changes() {
+        if (changeFeed == null) {
+            trackPlugging();
+            changeFeed = new ApplianceChangeFeed<>();
+        }
+        return changeFeed;
+    }
+
+    /**
+     * Returns an immutable snapshot of the set, which later modifications of the set do not affect.
+     * <p>
+     * The set keeps a persistent hash trie of its elements from the first call on, built in O(n)
+     * by that call. Every later snapshot is taken in O(1), and every modification copies only
+     * the O(log n) trie nodes on the path to the changed element, sharing the rest with the
+     * snapshots still in use; nodes not shared with any snapshot are updated in place.
+     *
+     * @return an unmodifiable set with the current elements, iterated in hash order.
+     */
+    public Set<T> snapshot() {
+        if (persistent == null) {
+            persistent = new PersistentApplianceSet.Builder<>();
+            for (int i = 0; i < end; i++) {
+                if (elements[i] != null) {
+                    persistent.add(elements[i]);
+                }
+            }
+        }
+        return persistent.build();
+    }
+
+    /**
+     * Returns the elements of the specified brand. The brand index is built on the first call
+     * and maintained by every later modification of the set.
+     *
+     * @param brand The brand to look for.
+     * @return a live, read-only view of the elements of that brand, in insertion order.
+     */
+    public Set<T> byBrand(String brand) {
+        if (brandIndex == null) {
+            brandIndex = buildIndex(ElectricalAppliance::getBrand);
+        }
+        return brandIndex.view(brand);
+    }
+
+    /**
+     * Returns the elements of the specified concrete class; instances of its subclasses are not included.
+     * The type index is built on the first call and maintained by every later modification of the set.
+     *
+     * @param type The class to look for.
+     * @return a live, read-only view of the elements of that class, in insertion order.
+     */
+    public Set<T> byType(Class<? extends ElectricalAppliance> type) {
+        if (typeIndex == null) {
+            typeIndex = buildIndex(Object::getClass);
+        }
+        return typeIndex.view(type);
+    }
+
+    /**
+     * Returns the elements of the specified appliance type, including instances of subclasses
+     * of the appliance class of that type. The type partition is built on the first call and
+     * maintained by every later modification of the set.
+     *
+     * @param type The appliance type to look for.
+     * @return a live, read-only view of the elements of that type, in insertion order.
+     */
+    public Set<T> byType(ApplianceType type) {
+        return typePartition().view(type);
+    }
+
+    /**
+     * Returns the elements partitioned by appliance type. The map has an entry for every type,
+     * empty or not, and iterates in the order of the types. The type partition is built on the
+     * first call and maintained by every later modification of the set.
+     *
+     * @return a read-only map from every appliance type to a live, read-only view of its elements.
+     */
+    public Map<ApplianceType, Set<T>> partitionByType() {
+        return typePartition().views();
+    }
+
+    /**
+     * @return the type partition, built over the current elements if it does not exist yet.
+     */
+    private TypePartition<T> typePartition() {
+        if (typePartition == null) {
+            TypePartition<T> built = new TypePartition<>();
+            for (int i = 0; i < end; i++) {
+                if (elements[i] != null) {
+                    built.add(elements[i]);
+                }
+            }
+            typePartition = built;
+        }
+        return typePartition;
+    }
+
+    /**
+     * Builds a secondary index over the current elements.
+     *
+     * @param keyExtractor Extracts the key of an element.
+     * @return the index.
+     */
+    private <K> SecondaryIndex<K, T> buildIndex(Function<? super T, ? extends K> keyExtractor) {
+        SecondaryIndex<K, T> built = new SecondaryIndex<>(keyExtractor);
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != null) {
+                built.add(elements[i]);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Returns the elements whose power consumption lies in the specified range.
+     * The power index is built on the first query and maintained by every later modification of the set.
+     *
+     * @param lo The lowest power to include, in watts.
+     * @param hi The highest power to include, in watts.
+     * @return the matching elements in ascending order of power.
+     */
+    public List<T> rangeByPower(double lo, double hi) {
+        return powerIndex().range(lo, hi);
+    }
+
+    /**
+     * Returns the elements whose electromagnetic emission lies in the specified range.
+     * The emission index is built on the first query and maintained by every later modification of the set.
+     *
+     * @param lo The lowest emission to include, in microtesla.
+     * @param hi The highest emission to include, in microtesla.
+     * @return the matching elements in ascending order of emission.
+     */
+    public List<T> rangeByEmission(double lo, double hi) {
+        return emissionIndex().range(lo, hi);
+    }
+
+    /**
+     * @param k The number of elements to return.
+     * @return at most k elements with the highest electromagnetic emission, highest first.
+     */
+    public List<T> topKByEmission(int k) {
+        return emissionIndex().top(k);
+    }
+
+    /**
+     * @param k The number of elements to return.
+     * @return at most k elements with the highest power consumption, highest first.
+     */
+    public List<T> topKByPower(int k) {
+        return powerIndex().top(k);
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return the power consumption at that percentile (nearest rank), or {@link Double#NaN} if the set is empty.
+     */
+    public double powerPercentile(double percentile) {
+        return powerIndex().percentile(percentile);
+    }
+
+    /**
+     * @param percentile The percentile, from 0 to 100.
+     * @return the electromagnetic emission at that percentile (nearest rank), or {@link Double#NaN} if the set is empty.
+     */
+    public double emissionPercentile(double percentile) {
+        return emissionIndex().percentile(percentile);
+    }
+
+    /**
+     * @return the power index, built from the current elements if it does not exist yet.
+     */
+    private RangeIndex<T> powerIndex() {
+        if (powerIndex == null) {
+            powerIndex = buildRangeIndex(ElectricalAppliance::getPower);
+        }
+        return powerIndex;
+    }
+
+    /**
+     * @return the emission index, built from the current elements if it does not exist yet.
+     */
+    private RangeIndex<T> emissionIndex() {
+        if (emissionIndex == null) {
+            emissionIndex = buildRangeIndex(ElectricalAppliance::getElectromagneticEmission);
+        }
+        return emissionIndex;
+    }
+
+    /**
+     * Builds a range index over the current elements.
+     *
+     * @param keyExtractor Extracts the key of an element.
+     * @return the index.
+     */
+    private RangeIndex<T> buildRangeIndex(ToDoubleFunction<? super T> keyExtractor) {
+        List<T> current = new ArrayList<>(size);
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != null) {
+                current.add(elements[i]);
+            }
+        }
+        return new RangeIndex<>(keyExtractor, current);
+    }
+
+    /**
+     * Adds an element that is entering the set to the secondary and range indexes and the
+     * persistent trie, and starts listening to its plug events if needed.
+     *
+     * @param element The element being added.
+     */
+    private void index(T element) {
+        if (plugTrackers != null) {
+            track(element);
+        }
+        if (brandIndex != null) {
+            brandIndex.add(element);
+        }
+        if (typeIndex != null) {
+            typeIndex.add(element);
+        }
+        if (typePartition != null) {
+            typePartition.add(element);
+        }
+        if (powerIndex != null) {
+            powerIndex.add(element);
+        }
+        if (emissionIndex != null) {
+            emissionIndex.add(element);
+        }
+        if (persistent != null) {
+            persistent.add(element);
+        }
+        if (changeFeed != null) {
+            changeFeed.publish(ApplianceChangeFeed.Kind.ADDED, element);
+        }
+    }
+
+    /**
+     * Removes an element that is leaving the set from the secondary and range indexes and the
+     * persistent trie, and stops listening to its plug events.
+     *
+     * @param element The element being removed.
+     */
+    private void unindex(T element) {
+        if (plugTrackers != null) {
+            untrack(element);
+        }
+        if (brandIndex != null) {
+            brandIndex.remove(element);
+        }
+        if (typeIndex != null) {
+            typeIndex.remove(element);
+        }
+        if (typePartition != null) {
+            typePartition.remove(element);
+        }
+        if (powerIndex != null) {
+            powerIndex.remove(element);
+        }
+        if (emissionIndex != null) {
+            emissionIndex.remove(element);
+        }
+        if (persistent != null) {
+            persistent.remove(element);
+        }
+        if (changeFeed != null) {
+            changeFeed.publish(ApplianceChangeFeed.Kind.REMOVED, element);
+        }
+    }
+
+    /**
+     * Empties the secondary and range indexes and the persistent trie.
+     */
+    private void clearIndexes() {
+        if (brandIndex != null) {
+            brandIndex.clear();
+        }
+        if (typeIndex != null) {
+            typeIndex.clear();
+        }
+        if (typePartition != null) {
+            typePartition.clear();
+        }
+        if (powerIndex != null) {
+            powerIndex.clear();
+        }
+        if (emissionIndex != null) {
+            emissionIndex.clear();
+        }
+        if (persistent != null) {
+            persistent.clear();
+        }
+        if (changeFeed != null) {
+            changeFeed.publish(ApplianceChangeFeed.Kind.CLEARED, null);
+        }
+    }
+
+    /**
+     * Removes all the elements from the set and releases the internal storage.
+     */
+    @Override
+    public void clear() {
+        clear(false);
+    }
+
+    /**
+     * Removes all the elements from the set.
+     *
+     * @param keepStorage {@code true} to keep the internal storage for reuse,
+     *                    {@code false} to replace it with storage of the initial capacity.
+     */
+    public void clear(boolean keepStorage) {
+        if (plugTrackers != null) {
+            untrackAll();
+        }
+        if (keepStorage) {
+            truncate(0);
+            Arrays.fill(index, 0);
+        } else {
+            allocate(INITIAL_CAPACITY);
+        }
+        clearIndexes();
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Compares the specified object with this set for equality, as defined by {@link Set#equals}.
+     *
+     * @return {@code true} if the specified object is a set with the same elements.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (!(o instanceof Set<?> other) || other.size() != size) {
+            return false;
+        }
+        return containsAll(other);
+    }
+
+    /**
+     * @return the sum of the hash codes of the elements, as defined by {@link Set#hashCode}.
+     */
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < end; i++) {
+            if (elements[i] != null) {
+                h += hashes[i];
+            }
+        }
+        return h;
+    }
+
+    /**
+     * @return a string representation of the set in the format "{ element1; element2; ... }".
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            toString(sb);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the string representation of the set, as returned by {@link #toString()},
+     * directly to the specified destination.
+     *
+     * @param out The destination, such as a {@link StringBuilder} or a {@link java.io.Writer}.
+     * @throws IOException if writing to the destination fails.
+     */
+    public void toString(Appendable out) throws IOException {
+        out.append("\n{ ");
+        for (int i = skipHoles(0); i < end; ) {
+            out.append(String.valueOf(elements[i]));
+            i = skipHoles(i + 1);
+            if (i < end) {
+                out.append("; ");
+            }
+        }
+        out.append(" }");
     }
 
 }
@@ -0,0 +1,317 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs fleet-control commands, such as plugging in, unplugging or probing many appliances,
+ * through a device gateway whose calls block on I/O.
+ * <p>
+ * The calls of one command are made concurrently, at most {@code maxConcurrency} at a time,
+ * each on its own thread: a virtual thread when the runtime provides them (Java 21 and later),
+ * otherwise a platform thread from a pool of {@code maxConcurrency} threads. Each call is
+ * interrupted and counted as timed out if it takes longer than the call timeout. A command runs
+ * as a scope: it returns only after every call it started has ended. If the calling thread is
+ * interrupted, the outstanding calls are cancelled and the interruption is passed on once they
+ * have ended.
+ * <p>
+ * The local plugging status of an appliance is changed only after the gateway has confirmed the
+ * call, so the set and its indexes follow the devices. A typical use is
+ * {@code operations.unplugAll(set.rangeByPower(2000, Double.POSITIVE_INFINITY))}.
+ */
+public class FleetOperations implements AutoCloseable {
+    /**
+     * The commands that can be sent to the devices.
+     */
+    public enum Command {
+        /** Switches the device on; the appliance is plugged in once confirmed. */
+        PLUG_IN,
+        /** Switches the device off; the appliance is unplugged once confirmed. */
+        UNPLUG,
+        /** Checks that the device responds, without changing the appliance. */
+        PROBE
+    }
+
+    /**
+     * The connection to the devices.
+     */
+    @FunctionalInterface
+    public interface DeviceGateway {
+        /**
+         * Sends a command to the device of an appliance and waits for it to be carried out.
+         * Implementations should respond to interruption, which is how timeouts are enforced.
+         *
+         * @param appliance The appliance whose device receives the command.
+         * @param command   The command.
+         * @throws Exception if the command failed.
+         */
+        void execute(ElectricalAppliance appliance, Command command) throws Exception;
+    }
+
+    /**
+     * The outcome of a command.
+     *
+     * @param command      The command.
+     * @param requested    The number of appliances the command was sent to.
+     * @param succeeded    The number of calls confirmed by the gateway.
+     * @param failures     The exceptions of the calls that failed, by appliance.
+     * @param timedOut     The appliances whose calls exceeded the call timeout.
+     * @param elapsedNanos The duration of the command, in nanoseconds.
+     */
+    public record Report(Command command, int requested, int succeeded,
+                         Map<ElectricalAppliance, Throwable> failures, List<ElectricalAppliance> timedOut,
+                         long elapsedNanos) {
+        /**
+         * @return the number of calls completed per second.
+         */
+        public double callsPerSecond() {
+            return elapsedNanos == 0 ? 0 : requested * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return a one-line summary of the command.
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%s: %d requested, %d succeeded, %d failed, %d timed out in %.1f ms (%.0f calls/s)",
+                    command, requested, succeeded, failures.size(), timedOut.size(),
+                    elapsedNanos / 1e6, callsPerSecond());
+        }
+    }
+
+    private final DeviceGateway gateway;
+    private final int maxConcurrency;
+    private final long timeoutNanos;
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Creates the fleet operations.
+     *
+     * @param gateway        The connection to the devices.
+     * @param maxConcurrency The largest number of calls in progress at once.
+     * @param callTimeout    The longest time a single call may take.
+     * @throws IllegalArgumentException if the concurrency or the timeout is not positive.
+     */
+    public FleetOperations(DeviceGateway gateway, int maxConcurrency, Duration callTimeout) {
+        if (maxConcurrency <= 0 || callTimeout.isNegative() || callTimeout.isZero()) {
+            throw new IllegalArgumentException("Concurrency and timeout must be positive.");
+        }
+        this.gateway = Objects.requireNonNull(gateway);
+        this.maxConcurrency = maxConcurrency;
+        this.timeoutNanos = callTimeout.toNanos();
+        this.executor = newCallExecutor(maxConcurrency);
+        this.timer = new ScheduledThreadPoolExecutor(1, daemonThreads("fleet-timeout-"));
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Plugs in the appliances.
+     *
+     * @param appliances The appliances to plug in.
+     * @return the report of the command.
+     * @throws InterruptedException if the calling thread is interrupted; the outstanding calls are cancelled
+     *                              and have ended when it is thrown.
+     */
+    public Report plugInAll(Collection<? extends ElectricalAppliance> appliances) throws InterruptedException {
+        return run(Command.PLUG_IN, appliances);
+    }
+
+    /**
+     * Unplugs the appliances.
+     *
+     * @param appliances The appliances to unplug.
+     * @return the report of the command.
+     * @throws InterruptedException if the calling thread is interrupted; the outstanding calls are cancelled
+     *                              and have ended when it is thrown.
+     */
+    public Report unplugAll(Collection<? extends ElectricalAppliance> appliances) throws InterruptedException {
+        return run(Command.UNPLUG, appliances);
+    }
+
+    /**
+     * Probes the devices of the appliances.
+     *
+     * @param appliances The appliances to probe.
+     * @return the report of the command.
+     * @throws InterruptedException if the calling thread is interrupted; the outstanding calls are cancelled
+     *                              and have ended when it is thrown.
+     */
+    public Report probeAll(Collection<? extends ElectricalAppliance> appliances) throws InterruptedException {
+        return run(Command.PROBE, appliances);
+    }
+
+    /**
+     * Sends a command to the devices of all the appliances and waits for every call to end.
+     *
+     * @param command    The command.
+     * @param appliances The appliances whose devices receive the command.
+     * @return the report of the command.
+     * @throws InterruptedException if the calling thread is interrupted; the outstanding calls are cancelled
+     *                              and have ended when it is thrown.
+     */
+    public Report run(Command command, Collection<? extends ElectricalAppliance> appliances)
+            throws InterruptedException {
+        long start = System.nanoTime();
+        List<ElectricalAppliance> targets = new ArrayList<>(appliances);
+        List<Call> calls = new ArrayList<>(targets.size());
+        Semaphore permits = new Semaphore(maxConcurrency);
+        try {
+            for (ElectricalAppliance appliance : targets) {
+                permits.acquire();
+                CallBody body = new CallBody(appliance, command);
+                Call call = new Call(appliance, body, permits);
+                body.call = call;
+                calls.add(call);
+                try {
+                    executor.execute(call);
+                } catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+            permits.acquire(maxConcurrency);
+            permits.release(maxConcurrency);
+        } catch (InterruptedException | RuntimeException e) {
+            for (Call call : calls) {
+                call.cancel(true);
+            }
+            permits.acquireUninterruptibly(maxConcurrency);
+            permits.release(maxConcurrency);
+            if (e instanceof InterruptedException) {
+                Thread.interrupted();
+            }
+            throw e;
+        }
+
+        int succeeded = 0;
+        Map<ElectricalAppliance, Throwable> failures = new IdentityHashMap<>();
+        List<ElectricalAppliance> timedOut = new ArrayList<>();
+        for (Call call : calls) {
+            try {
+                call.get();
+                succeeded++;
+                if (command == Command.PLUG_IN) {
+                    call.appliance.plugIn();
+                } else if (command == Command.UNPLUG) {
+                    call.appliance.unplug();
+                }
+            } catch (CancellationException e) {
+                timedOut.add(call.appliance);
+            } catch (ExecutionException e) {
+                failures.put(call.appliance, e.getCause());
+            }
+        }
+        return new Report(command, targets.size(), succeeded, Collections.unmodifiableMap(failures),
+                Collections.unmodifiableList(timedOut), System.nanoTime() - start);
+    }
+
+    /**
+     * Stops the threads of the fleet operations. Commands in progress are not interrupted.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * One gateway call. It arms its timeout when it starts and releases its permit when its thread
+     * is done with it, so a call that ignores interruption still holds its permit until it returns,
+     * and a call cancelled before it started releases its permit when the executor reaches it.
+     */
+    private final class Call extends FutureTask<Void> {
+        private final ElectricalAppliance appliance;
+        private final Semaphore permits;
+        private volatile ScheduledFuture<?> timeout;
+
+        Call(ElectricalAppliance appliance, CallBody body, Semaphore permits) {
+            super(body);
+            this.appliance = appliance;
+            this.permits = permits;
+        }
+
+        @Override
+        public void run() {
+            try {
+                super.run();
+            } finally {
+                permits.release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            ScheduledFuture<?> t = timeout;
+            if (t != null) {
+                t.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The work of a {@link Call}.
+     */
+    private final class CallBody implements Callable<Void> {
+        private final ElectricalAppliance appliance;
+        private final Command command;
+        private Call call;
+
+        CallBody(ElectricalAppliance appliance, Command command) {
+            this.appliance = appliance;
+            this.command = command;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            Call self = call;
+            self.timeout = timer.schedule(() -> self.cancel(true), timeoutNanos, TimeUnit.NANOSECONDS);
+            gateway.execute(appliance, command);
+            return null;
+        }
+    }
+
+    /**
+     * Creates the executor running the calls: one virtual thread per call if the runtime supports
+     * virtual threads, otherwise a pool of daemon platform threads, one per allowed concurrent call.
+     */
+    private static ExecutorService newCallExecutor(int maxConcurrency) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newFixedThreadPool(maxConcurrency, daemonThreads("fleet-call-"));
+        }
+    }
+
+    /**
+     * @return a factory of daemon threads named with the prefix and a number.
+     */
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,172 @@
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, allocation-free histogram of durations in nanoseconds.
+ * <p>
+ * The buckets are laid out as in HdrHistogram: every power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so each recorded value is kept with a relative
+ * error below 1/{@value #SUB_BUCKETS} across the whole range of {@code long}, in a fixed array
+ * of {@value #BUCKETS} counters. Recording is a few bit operations and atomic increments and is
+ * safe from any number of threads; reading takes a {@link Snapshot}.
+ */
+public final class LatencyHistogram {
+    /**
+     * The base-2 logarithm of {@link #SUB_BUCKETS}.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * The number of linear sub-buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The total number of buckets, enough for every non-negative {@code long}.
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos The duration in nanoseconds; negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Discards all recorded values. Values recorded concurrently may be partly kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return a copy of the recorded values.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, total.sum(), max.get());
+    }
+
+    /**
+     * @return the bucket holding the value.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket.
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        long lower = (long) (SUB_BUCKETS + sub) << shift;
+        return lower + ((1L << shift) - 1);
+    }
+
+    /**
+     * The values of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * @return the number of recorded values.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return the largest recorded value, in nanoseconds.
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @return the mean of the recorded values in nanoseconds, or 0 if there are none.
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Returns the value below or at which the specified share of the recorded values lie,
+         * rounded up to the end of its bucket and capped at the largest recorded value.
+         *
+         * @param percentile The share, from 0 to 100.
+         * @return the value in nanoseconds, or 0 if there are no values.
+         * @throws IllegalArgumentException if the percentile is out of range.
+         */
+        public long percentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * @return a summary with the count, mean, median, 99th percentile and maximum.
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "count=%d mean=%.0fns p50=%dns p99=%dns max=%dns",
+                    count, mean(), percentile(50), percentile(99), max);
+        }
+    }
+}
@@ -0,0 +1,800 @@
+import electrical_appliances.ApplianceType;
+import electrical_appliances.ElectricalAppliance;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * An appliance set kept off the heap, in a memory-mapped file, for registries too large to hold
+ * as {@link ElectricalAppliance} objects.
+ * <p>
+ * Every appliance is stored as a fixed-width record of {@value #RECORD_SIZE} bytes: its type tag,
+ * its plugging status, the code of its brand and its power and electromagnetic emission. Brands
+ * are interned in a brand table kept in a companion file with the suffix {@code .brands}, so each
+ * distinct brand is stored once. The records are mapped in segments of
+ * 2<sup>{@value #SEGMENT_SHIFT}</sup> records, so the store is not limited by the 2 GB size of a
+ * single mapping and grows without copying.
+ * <p>
+ * Opening an existing file only maps it and reads the brand table; the records are paged in by the
+ * operating system as they are used. The hash index needed by {@link #contains}, {@link #add} and
+ * {@link #remove} is built on the heap, from the records, the first time one of them is called,
+ * and takes four bytes per bucket.
+ * <p>
+ * The records are read in place through {@link RecordView}s, flyweights that hold nothing but the
+ * position of a record: {@link #view} creates one per call and {@link #forEachRecord} repositions a
+ * single one over all records, so scans create no objects per record. The primitive accessors
+ * such as {@link #power} read the records directly as well. Appliances are materialized from their
+ * records only on demand, by {@link #get} and the iterator, which the {@link java.util.Set} contract
+ * requires. They are detached copies, created plugged in without a plug event if the record is:
+ * plugging one in does not change the store, which is done with {@link #setPluggedIn} instead.
+ * <p>
+ * Removal moves the last record into the freed position, so the indexes of the records are
+ * dense but iteration order is the insertion order only as long as nothing is removed.
+ * This class is not thread-safe.
+ */
+public class MappedApplianceStore extends AbstractSet<ElectricalAppliance> implements Closeable {
+    /**
+     * The magic number opening every store file ("EAM1" in ASCII).
+     */
+    private static final int MAGIC = 0x45414D31;
+
+    /**
+     * The version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the file header, in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * The position of the record count in the header.
+     */
+    private static final int COUNT_OFFSET = 8;
+
+    /**
+     * The size of a record, in bytes.
+     */
+    private static final int RECORD_SIZE = 24;
+
+    /**
+     * The positions of the fields within a record.
+     */
+    private static final int TAG_OFFSET = 0;
+    private static final int PLUGGED_OFFSET = 1;
+    private static final int BRAND_OFFSET = 4;
+    private static final int POWER_OFFSET = 8;
+    private static final int EMISSION_OFFSET = 16;
+
+    /**
+     * The base-2 logarithm of the number of records per mapped segment.
+     */
+    private static final int SEGMENT_SHIFT = 20;
+
+    /**
+     * The number of records per mapped segment.
+     */
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+
+    /**
+     * The multiplier used to spread record hashes over the hash index.
+     */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /**
+     * The channel of the record file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The channel of the brand table, opened for appending.
+     */
+    private final FileChannel brandChannel;
+
+    /**
+     * The mapped file header.
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * The mapped record segments.
+     */
+    private MappedByteBuffer[] segments;
+
+    /**
+     * The number of records in the store.
+     */
+    private int count;
+
+    /**
+     * The brands, by code.
+     */
+    private final List<String> brands = new ArrayList<>();
+
+    /**
+     * The codes of the brands.
+     */
+    private final Map<String, Integer> brandCodes = new HashMap<>();
+
+    /**
+     * The hash index: open addressing with linear probing, each bucket holding a record index
+     * plus one, or zero when empty. Built on first use.
+     */
+    private int[] index;
+
+    /**
+     * The shift turning a spread hash into a bucket of the hash index.
+     */
+    private int indexShift;
+
+    /**
+     * The number of structural modifications, used to detect concurrent modification during iteration.
+     */
+    private int modCount;
+
+    /**
+     * Maps the store kept in the specified file, creating it if it does not exist.
+     *
+     * @param file The record file; the brand table is kept next to it.
+     * @throws IOException if the files cannot be opened or are not a valid store.
+     */
+    public MappedApplianceStore(Path file) throws IOException {
+        Path brandFile = file.resolveSibling(file.getFileName() + ".brands");
+        readBrands(brandFile);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (created) {
+                header.putInt(0, MAGIC);
+                header.putInt(4, VERSION);
+                header.putInt(COUNT_OFFSET, 0);
+            } else if (header.getInt(0) != MAGIC) {
+                throw new StreamCorruptedException("Not an appliance store: " + file);
+            } else if (header.getInt(4) != VERSION) {
+                throw new StreamCorruptedException("Unsupported store version: " + header.getInt(4));
+            }
+            count = header.getInt(COUNT_OFFSET);
+            segments = new MappedByteBuffer[Math.max(1, (count + SEGMENT_RECORDS - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length && (long) i * SEGMENT_RECORDS < count; i++) {
+                mapSegment(i);
+            }
+            brandChannel = FileChannel.open(brandFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the brand table, if the file exists.
+     *
+     * @param brandFile The file holding the brands in modified UTF-8, in order of their codes.
+     * @throws IOException if the file cannot be read.
+     */
+    private void readBrands(Path brandFile) throws IOException {
+        if (!Files.exists(brandFile)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(brandFile)))) {
+            while (true) {
+                String brand;
+                try {
+                    brand = in.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                brandCodes.put(brand, brands.size());
+                brands.add(brand);
+            }
+        }
+    }
+
+    /**
+     * Maps the segment with the specified number, extending the file if needed.
+     *
+     * @param segment The number of the segment.
+     * @throws IOException if the segment cannot be mapped.
+     */
+    private void mapSegment(int segment) throws IOException {
+        if (segment >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(segment + 1, segments.length * 2));
+        }
+        long position = HEADER_SIZE + (long) segment * SEGMENT_RECORDS * RECORD_SIZE;
+        segments[segment] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                (long) SEGMENT_RECORDS * RECORD_SIZE);
+        segments[segment].order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return the segment holding the record with the specified index.
+     */
+    private MappedByteBuffer segmentOf(int record) {
+        return segments[record >>> SEGMENT_SHIFT];
+    }
+
+    /**
+     * @return the position of the record with the specified index within its segment.
+     */
+    private static int offsetOf(int record) {
+        return (record & (SEGMENT_RECORDS - 1)) * RECORD_SIZE;
+    }
+
+    /**
+     * @return the number of appliances in the store.
+     */
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return the power consumption of the appliance, in watts.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public double power(int i) {
+        return segmentOf(checkIndex(i)).getDouble(offsetOf(i) + POWER_OFFSET);
+    }
+
+    /**
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return the electromagnetic emission of the appliance, in microtesla.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public double emission(int i) {
+        return segmentOf(checkIndex(i)).getDouble(offsetOf(i) + EMISSION_OFFSET);
+    }
+
+    /**
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return the brand of the appliance, which may be {@code null}.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public String brand(int i) {
+        int code = segmentOf(checkIndex(i)).getInt(offsetOf(i) + BRAND_OFFSET);
+        return code < 0 ? null : brands.get(code);
+    }
+
+    /**
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return {@code true} if the appliance is plugged in.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public boolean isPluggedIn(int i) {
+        return segmentOf(checkIndex(i)).get(offsetOf(i) + PLUGGED_OFFSET) != 0;
+    }
+
+    /**
+     * Changes the plugging status of the appliance stored in the specified record.
+     *
+     * @param i       The index of a record, from 0 to {@link #size()} - 1.
+     * @param plugged The new plugging status.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public void setPluggedIn(int i, boolean plugged) {
+        segmentOf(checkIndex(i)).put(offsetOf(i) + PLUGGED_OFFSET, (byte) (plugged ? 1 : 0));
+    }
+
+    /**
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return the type of the appliance.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public ApplianceType type(int i) {
+        byte tag = segmentOf(checkIndex(i)).get(offsetOf(i) + TAG_OFFSET);
+        try {
+            return ApplianceSnapshotCodec.typeOf(tag);
+        } catch (StreamCorruptedException e) {
+            throw new IllegalStateException("Corrupted record " + i, e);
+        }
+    }
+
+    /**
+     * Materializes the appliance stored in the specified record. The appliance is created plugged
+     * in if the record is, without publishing a plug event.
+     *
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return a new appliance equal to the stored one, plugged in if the stored one is.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public ElectricalAppliance get(int i) {
+        MappedByteBuffer segment = segmentOf(checkIndex(i));
+        int offset = offsetOf(i);
+        int code = segment.getInt(offset + BRAND_OFFSET);
+        try {
+            return ApplianceSnapshotCodec.create(segment.get(offset + TAG_OFFSET),
+                    code < 0 ? null : brands.get(code),
+                    segment.getDouble(offset + POWER_OFFSET), segment.getDouble(offset + EMISSION_OFFSET),
+                    segment.get(offset + PLUGGED_OFFSET) != 0);
+        } catch (StreamCorruptedException e) {
+            throw new IllegalStateException("Corrupted record " + i, e);
+        }
+    }
+
+    /**
+     * Returns a flyweight view of the specified record, which reads the record in place.
+     *
+     * @param i The index of a record, from 0 to {@link #size()} - 1.
+     * @return a view of the record, valid until the store is structurally modified.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public RecordView view(int i) {
+        RecordView view = new RecordView();
+        view.record = checkIndex(i);
+        return view;
+    }
+
+    /**
+     * Performs the action for every record, in record order, through a single view repositioned
+     * from record to record. The action must not keep the view or modify the store structurally.
+     *
+     * @param action The action to perform.
+     * @throws ConcurrentModificationException if the action modifies the store structurally.
+     */
+    public void forEachRecord(Consumer<? super RecordView> action) {
+        RecordView view = new RecordView();
+        for (int i = 0; i < count; i++) {
+            view.record = i;
+            action.accept(view);
+            view.checkForComodification();
+        }
+    }
+
+    /**
+     * @return {@code true} if the store contains an appliance equal to the specified object.
+     */
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ElectricalAppliance && find((ElectricalAppliance) o) >= 0;
+    }
+
+    /**
+     * Stores the specified appliance, with its current plugging status, if no equal one is stored.
+     *
+     * @param appliance The appliance to be added.
+     * @return {@code true} if the appliance was added; {@code false} if it is {@code null} or already stored.
+     * @throws IllegalArgumentException if the appliance is not of one of the five known types.
+     * @throws UncheckedIOException if the store file cannot be extended.
+     */
+    @Override
+    public boolean add(ElectricalAppliance appliance) {
+        if (appliance == null) return false;
+        byte tag = ApplianceSnapshotCodec.tagOf(appliance);
+        if (find(appliance) >= 0) {
+            return false;
+        }
+        int record = count;
+        try {
+            int segment = record >>> SEGMENT_SHIFT;
+            if (segment >= segments.length || segments[segment] == null) {
+                mapSegment(segment);
+            }
+            writeRecord(record, tag, brandCode(appliance.getBrand()), appliance.isPluggedIn(),
+                    appliance.getPower(), appliance.getElectromagneticEmission());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        count++;
+        header.putInt(COUNT_OFFSET, count);
+        modCount++;
+        if (index.length < count * 2) {
+            rebuildIndex();
+        } else {
+            insertIntoIndex(record);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the stored appliance equal to the specified object, if any.
+     * The last record is moved into its place.
+     *
+     * @return {@code true} if an appliance was removed.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof ElectricalAppliance)) return false;
+        int bucket = find((ElectricalAppliance) o);
+        if (bucket < 0) {
+            return false;
+        }
+        removeRecord(index[bucket] - 1, bucket);
+        return true;
+    }
+
+    /**
+     * Removes all the appliances. The brand table is kept, and so is the size of the file.
+     */
+    @Override
+    public void clear() {
+        count = 0;
+        header.putInt(COUNT_OFFSET, 0);
+        modCount++;
+        if (index != null) {
+            Arrays.fill(index, 0);
+        }
+    }
+
+    /**
+     * @return an iterator materializing the stored appliances in record order.
+     */
+    @Override
+    public Iterator<ElectricalAppliance> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * Writes the changes of the mapped records and the brand table to the storage device.
+     *
+     * @throws IOException if the changes cannot be written.
+     */
+    public void force() throws IOException {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        brandChannel.force(false);
+    }
+
+    /**
+     * Writes all changes to the storage device and closes the files. The mappings stay valid
+     * until they are garbage-collected, but the store must not be used afterwards.
+     *
+     * @throws IOException if the changes cannot be written or the files cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                brandChannel.close();
+            }
+        }
+    }
+
+    /**
+     * @return the code of the brand, adding it to the brand table if needed; {@code -1} for no brand.
+     */
+    private int brandCode(String brand) throws IOException {
+        if (brand == null) {
+            return -1;
+        }
+        Integer code = brandCodes.get(brand);
+        if (code != null) {
+            return code;
+        }
+        DataOutputStream out = new DataOutputStream(Channels.newOutputStream(brandChannel));
+        out.writeUTF(brand);
+        out.flush();
+        brandCodes.put(brand, brands.size());
+        brands.add(brand);
+        return brands.size() - 1;
+    }
+
+    /**
+     * Writes all the fields of a record.
+     */
+    private void writeRecord(int record, byte tag, int brandCode, boolean plugged, double power, double emission) {
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        segment.put(offset + TAG_OFFSET, tag);
+        segment.put(offset + PLUGGED_OFFSET, (byte) (plugged ? 1 : 0));
+        segment.putInt(offset + BRAND_OFFSET, brandCode);
+        segment.putDouble(offset + POWER_OFFSET, power);
+        segment.putDouble(offset + EMISSION_OFFSET, emission);
+    }
+
+    /**
+     * Removes a record by moving the last record into its place.
+     *
+     * @param record The index of the record to remove.
+     * @param bucket The bucket of the hash index referring to it.
+     */
+    private void removeRecord(int record, int bucket) {
+        deleteFromIndex(bucket);
+        int last = count - 1;
+        if (record != last) {
+            index[bucketOfRecord(last)] = record + 1;
+            MappedByteBuffer from = segmentOf(last);
+            MappedByteBuffer to = segmentOf(record);
+            int fromOffset = offsetOf(last);
+            int toOffset = offsetOf(record);
+            to.putLong(toOffset, from.getLong(fromOffset));
+            to.putLong(toOffset + POWER_OFFSET, from.getLong(fromOffset + POWER_OFFSET));
+            to.putLong(toOffset + EMISSION_OFFSET, from.getLong(fromOffset + EMISSION_OFFSET));
+        }
+        count = last;
+        header.putInt(COUNT_OFFSET, count);
+        modCount++;
+    }
+
+    /**
+     * @param i The index to check.
+     * @return the index.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    private int checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("Index " + i + " out of bounds for size " + count);
+        }
+        return i;
+    }
+
+    /**
+     * Computes the hash of a record from its type tag, brand code and the bits of its values.
+     */
+    private static int recordHash(int tag, int brandCode, long powerBits, long emissionBits) {
+        long h = tag;
+        h = 31 * h + brandCode;
+        h = 31 * h + powerBits;
+        h = 31 * h + emissionBits;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return the hash of the stored record with the specified index.
+     */
+    private int recordHash(int record) {
+        MappedByteBuffer segment = segmentOf(record);
+        int offset = offsetOf(record);
+        return recordHash(segment.get(offset + TAG_OFFSET), segment.getInt(offset + BRAND_OFFSET),
+                segment.getLong(offset + POWER_OFFSET), segment.getLong(offset + EMISSION_OFFSET));
+    }
+
+    /**
+     * @return the home bucket in the hash index for the specified hash.
+     */
+    private int bucket(int hash) {
+        return (hash * HASH_MULTIPLIER) >>> indexShift;
+    }
+
+    /**
+     * Builds the hash index from the records, sized for twice their number.
+     */
+    private void rebuildIndex() {
+        int buckets = Integer.highestOneBit(Math.max(count, 2) * 4 - 1);
+        index = new int[buckets];
+        indexShift = Integer.numberOfLeadingZeros(buckets) + 1;
+        for (int record = 0; record < count; record++) {
+            insertIntoIndex(record);
+        }
+    }
+
+    /**
+     * Puts the record with the specified index into the hash index.
+     */
+    private void insertIntoIndex(int record) {
+        int mask = index.length - 1;
+        int i = bucket(recordHash(record));
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = record + 1;
+    }
+
+    /**
+     * Looks up the record equal to the specified appliance, building the hash index if needed.
+     *
+     * @return the bucket in the hash index referring to the record, or {@code -1}.
+     */
+    private int find(ElectricalAppliance appliance) {
+        if (index == null) {
+            rebuildIndex();
+        }
+        byte tag = ApplianceSnapshotCodec.tagOrZero(appliance);
+        if (tag == 0) {
+            return -1;
+        }
+        int brandCode = -1;
+        if (appliance.getBrand() != null) {
+            Integer code = brandCodes.get(appliance.getBrand());
+            if (code == null) {
+                return -1;
+            }
+            brandCode = code;
+        }
+        long powerBits = Double.doubleToLongBits(appliance.getPower());
+        long emissionBits = Double.doubleToLongBits(appliance.getElectromagneticEmission());
+        int mask = index.length - 1;
+        for (int i = bucket(recordHash(tag, brandCode, powerBits, emissionBits)); ; i = (i + 1) & mask) {
+            int entry = index[i];
+            if (entry == 0) {
+                return -1;
+            }
+            MappedByteBuffer segment = segmentOf(entry - 1);
+            int offset = offsetOf(entry - 1);
+            if (segment.get(offset + TAG_OFFSET) == tag
+                    && segment.getInt(offset + BRAND_OFFSET) == brandCode
+                    && segment.getLong(offset + POWER_OFFSET) == powerBits
+                    && segment.getLong(offset + EMISSION_OFFSET) == emissionBits) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * @return the bucket in the hash index referring to the record with the specified index.
+     */
+    private int bucketOfRecord(int record) {
+        int mask = index.length - 1;
+        int i = bucket(recordHash(record));
+        while (index[i] != record + 1) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Empties a bucket of the hash index with backward-shift deletion.
+     */
+    private void deleteFromIndex(int bucket) {
+        int mask = index.length - 1;
+        int hole = bucket;
+        for (int i = (hole + 1) & mask; index[i] != 0; i = (i + 1) & mask) {
+            int home = bucket(recordHash(index[i] - 1));
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                index[hole] = index[i];
+                hole = i;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    /**
+     * A view of one record of the store. It holds only the position of the record and reads the
+     * fields from the mapping on every call. Adding or removing appliances moves records, so a view
+     * fails with {@link ConcurrentModificationException} once the store is structurally modified.
+     */
+    public final class RecordView {
+        private final int expectedModCount = modCount;
+        private int record;
+
+        private RecordView() {
+        }
+
+        /**
+         * @return the index of the record.
+         */
+        public int index() {
+            checkForComodification();
+            return record;
+        }
+
+        /**
+         * @return the type of the appliance.
+         */
+        public ApplianceType type() {
+            return MappedApplianceStore.this.type(index());
+        }
+
+        /**
+         * @return the brand of the appliance, which may be {@code null}.
+         */
+        public String brand() {
+            return MappedApplianceStore.this.brand(index());
+        }
+
+        /**
+         * @return the power consumption of the appliance, in watts.
+         */
+        public double power() {
+            return MappedApplianceStore.this.power(index());
+        }
+
+        /**
+         * @return the electromagnetic emission of the appliance, in microtesla.
+         */
+        public double emission() {
+            return MappedApplianceStore.this.emission(index());
+        }
+
+        /**
+         * @return {@code true} if the appliance is plugged in.
+         */
+        public boolean isPluggedIn() {
+            return MappedApplianceStore.this.isPluggedIn(index());
+        }
+
+        /**
+         * Changes the plugging status stored in the record.
+         *
+         * @param plugged The new plugging status.
+         */
+        public void setPluggedIn(boolean plugged) {
+            MappedApplianceStore.this.setPluggedIn(index(), plugged);
+        }
+
+        /**
+         * @return a new appliance equal to the stored one, as returned by {@link #get}.
+         */
+        public ElectricalAppliance toAppliance() {
+            return get(index());
+        }
+
+        /**
+         * @throws ConcurrentModificationException if the store was structurally modified.
+         */
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * A fail-fast iterator materializing the appliances in record order.
+     * Its {@link #remove} moves the last record into the current position, which is visited next.
+     */
+    private class Itr implements Iterator<ElectricalAppliance> {
+        private int cursor;
+        private int lastReturned = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < count;
+        }
+
+        @Override
+        public ElectricalAppliance next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (cursor >= count) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor;
+            return get(cursor++);
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned < 0) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (index == null) {
+                rebuildIndex();
+            }
+            removeRecord(lastReturned, bucketOfRecord(lastReturned));
+            cursor = lastReturned;
+            lastReturned = -1;
+            expectedModCount = modCount;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of appliances stored in a hash array mapped trie, as returned by
+ * {@link ElectricalApplianceSet#snapshot()}.
+ * <p>
+ * Each node of the trie consumes five bits of the hash code: a 32-bit bitmap tells which of the
+ * 32 possible children exist, and only those are stored, in a compact array, either as elements
+ * or as child nodes. Elements whose hash codes are entirely equal end up together in a collision
+ * node below the last level. A new version of the set copies only the nodes on the path to the
+ * changed element, at most seven of them, and shares every other node with the previous version,
+ * so any number of versions can be kept for little more than the memory of one.
+ * <p>
+ * Versions are produced by a {@link Builder}, which the owning set updates as it changes. Nodes
+ * created since the last version was taken belong to the builder and are updated in place; once a
+ * version has been taken its nodes are frozen and copied on write. Iteration order follows the
+ * hash codes, not the insertion order.
+ *
+ * @param <T> The type of the elements.
+ */
+final class PersistentApplianceSet<T extends ElectricalAppliance> extends AbstractSet<T> {
+    /**
+     * The number of hash bits consumed per level.
+     */
+    private static final int BITS = 5;
+
+    /**
+     * The mask selecting the hash bits of one level.
+     */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * The shift at which hash codes are exhausted and colliding elements are kept in a list.
+     */
+    private static final int COLLISION_SHIFT = 35;
+
+    /**
+     * The shared root of empty sets.
+     */
+    private static final Node EMPTY = new Node(null, 0, new Object[0]);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentApplianceSet(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of elements in the set.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the set contains the specified element.
+     */
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof ElectricalAppliance)) {
+            return false;
+        }
+        int hash = o.hashCode();
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            if (shift == COLLISION_SHIFT) {
+                for (Object entry : node.array) {
+                    if (entry.equals(o)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return false;
+            }
+            Object entry = node.array[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (!(entry instanceof Node)) {
+                return entry.hashCode() == hash && entry.equals(o);
+            }
+            node = (Node) entry;
+        }
+    }
+
+    /**
+     * @return an iterator over the elements, in the order of the trie.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Itr();
+    }
+
+    /**
+     * A node of the trie. Below {@link #COLLISION_SHIFT} the array holds the children selected
+     * by the bitmap; at that depth the bitmap is unused and the array lists elements with equal
+     * hash codes.
+     */
+    private static final class Node {
+        /**
+         * The builder allowed to update the node in place, or {@code null} if it is frozen.
+         */
+        final Object owner;
+        int bitmap;
+        Object[] array;
+
+        Node(Object owner, int bitmap, Object[] array) {
+            this.owner = owner;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        /**
+         * @return this node if the owner may update it, otherwise a copy belonging to the owner.
+         */
+        Node editable(Object edit) {
+            return owner == edit ? this : new Node(edit, bitmap, array.clone());
+        }
+
+        /**
+         * @return this node updated with the bitmap and array if the owner may update it,
+         * otherwise a new node with them belonging to the owner.
+         */
+        Node with(Object edit, int newBitmap, Object[] newArray) {
+            if (owner != edit) {
+                return new Node(edit, newBitmap, newArray);
+            }
+            bitmap = newBitmap;
+            array = newArray;
+            return this;
+        }
+    }
+
+    /**
+     * Inserts an element that is not in the trie.
+     *
+     * @return the updated node.
+     */
+    private static Node insert(Node node, Object element, int hash, int shift, Object edit) {
+        if (shift == COLLISION_SHIFT) {
+            Object[] array = Arrays.copyOf(node.array, node.array.length + 1);
+            array[node.array.length] = element;
+            return node.with(edit, 0, array);
+        }
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int position = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] array = new Object[node.array.length + 1];
+            System.arraycopy(node.array, 0, array, 0, position);
+            array[position] = element;
+            System.arraycopy(node.array, position, array, position + 1, node.array.length - position);
+            return node.with(edit, node.bitmap | bit, array);
+        }
+        Object entry = node.array[position];
+        Node child = entry instanceof Node
+                ? insert((Node) entry, element, hash, shift + BITS, edit)
+                : pair(entry, entry.hashCode(), element, hash, shift + BITS, edit);
+        if (child == entry) {
+            return node;
+        }
+        Node result = node.editable(edit);
+        result.array[position] = child;
+        return result;
+    }
+
+    /**
+     * @return a new node holding two elements, nested as deep as their hash codes agree.
+     */
+    private static Node pair(Object a, int hashA, Object b, int hashB, int shift, Object edit) {
+        if (shift == COLLISION_SHIFT) {
+            return new Node(edit, 0, new Object[]{a, b});
+        }
+        int indexA = (hashA >>> shift) & MASK;
+        int indexB = (hashB >>> shift) & MASK;
+        if (indexA == indexB) {
+            return new Node(edit, 1 << indexA, new Object[]{pair(a, hashA, b, hashB, shift + BITS, edit)});
+        }
+        return new Node(edit, (1 << indexA) | (1 << indexB),
+                indexA < indexB ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    /**
+     * Removes an element that is in the trie. A child left with a single element is replaced
+     * by that element, so removals do not leave single-element nodes behind.
+     *
+     * @return the updated node, or {@code null} if it became empty.
+     */
+    private static Node delete(Node node, Object element, int hash, int shift, Object edit) {
+        if (shift == COLLISION_SHIFT) {
+            int i = 0;
+            while (!node.array[i].equals(element)) {
+                i++;
+            }
+            if (node.array.length == 1) {
+                return null;
+            }
+            return node.with(edit, 0, removeAt(node.array, i));
+        }
+        int bit = 1 << ((hash >>> shift) & MASK);
+        int position = Integer.bitCount(node.bitmap & (bit - 1));
+        Object entry = node.array[position];
+        if (entry instanceof Node) {
+            Node child = delete((Node) entry, element, hash, shift + BITS, edit);
+            if (child == null) {
+                return without(node, bit, position, edit);
+            }
+            Object replacement = child.array.length == 1 && !(child.array[0] instanceof Node)
+                    ? child.array[0] : child;
+            if (replacement == entry) {
+                return node;
+            }
+            Node result = node.editable(edit);
+            result.array[position] = replacement;
+            return result;
+        }
+        return without(node, bit, position, edit);
+    }
+
+    /**
+     * @return the node without the child at the position, or {@code null} if that was the only one.
+     */
+    private static Node without(Node node, int bit, int position, Object edit) {
+        if (node.array.length == 1) {
+            return null;
+        }
+        return node.with(edit, node.bitmap & ~bit, removeAt(node.array, position));
+    }
+
+    /**
+     * @return a copy of the array without the entry at the position.
+     */
+    private static Object[] removeAt(Object[] array, int position) {
+        Object[] result = new Object[array.length - 1];
+        System.arraycopy(array, 0, result, 0, position);
+        System.arraycopy(array, position + 1, result, position, result.length - position);
+        return result;
+    }
+
+    /**
+     * Keeps the current contents of a mutable set as a trie and hands out immutable versions of it.
+     * The owning set reports every element it gains or loses.
+     *
+     * @param <T> The type of the elements.
+     */
+    static final class Builder<T extends ElectricalAppliance> {
+        private Node root = EMPTY;
+        private int size;
+
+        /**
+         * The token marking the nodes that may be updated in place; replaced whenever a version
+         * is taken, which freezes all existing nodes.
+         */
+        private Object edit = new Object();
+
+        /**
+         * The last version taken, if nothing changed since.
+         */
+        private PersistentApplianceSet<T> version;
+
+        /**
+         * Adds an element that is not in the set.
+         */
+        void add(T element) {
+            root = insert(root, element, element.hashCode(), 0, edit);
+            size++;
+            version = null;
+        }
+
+        /**
+         * Removes an element that is in the set.
+         */
+        void remove(T element) {
+            Node result = delete(root, element, element.hashCode(), 0, edit);
+            root = result == null ? EMPTY : result;
+            size--;
+            version = null;
+        }
+
+        /**
+         * Removes all elements.
+         */
+        void clear() {
+            root = EMPTY;
+            size = 0;
+            version = null;
+        }
+
+        /**
+         * @return an immutable set with the current elements; O(1).
+         */
+        PersistentApplianceSet<T> build() {
+            if (version == null) {
+                version = new PersistentApplianceSet<>(root, size);
+                edit = new Object();
+            }
+            return version;
+        }
+    }
+
+    /**
+     * A depth-first iterator over the trie.
+     */
+    private final class Itr implements Iterator<T> {
+        /**
+         * The nodes on the path to the next element; there are at most eight levels.
+         */
+        private final Node[] nodes = new Node[COLLISION_SHIFT / BITS + 1];
+        private final int[] positions = new int[nodes.length];
+        private int depth;
+        private Object next;
+
+        Itr() {
+            nodes[0] = root;
+            advance();
+        }
+
+        /**
+         * Finds the next element after the current positions.
+         */
+        private void advance() {
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                if (positions[depth] == node.array.length) {
+                    depth--;
+                    continue;
+                }
+                Object entry = node.array[positions[depth]++];
+                if (entry instanceof Node) {
+                    depth++;
+                    nodes[depth] = (Node) entry;
+                    positions[depth] = 0;
+                } else {
+                    next = entry;
+                    return;
+                }
+            }
+            next = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T result = (T) next;
+            advance();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import electrical_appliances.ElectricalAppliance;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals over the plugged-in appliances of an {@link ElectricalApplianceSet}.
+ * <p>
+ * The totals are updated from plug events, which may arrive on any thread. The count and
+ * the total power are kept in striped {@link LongAdder} accumulators, so concurrent events do
+ * not contend on a single variable; reading them costs O(1) in the number of appliances. The
+ * power is accumulated in whole microwatts, so that plugging an appliance in and out again
+ * restores the total exactly, however many times it happens; summing doubles would drift.
+ * The maximum emission has to survive unplugging of the current maximum, so the emissions of
+ * the plugged-in appliances are counted in a {@link ConcurrentSkipListMap}; updates cost
+ * O(log n) and the maximum is its last key.
+ * <p>
+ * The set calls {@link #plugged} and {@link #unplugged} for an appliance strictly alternately,
+ * so that each appliance is counted at most once.
+ */
+final class PlugTotals {
+    /**
+     * The number of plugged-in appliances.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * The number of microwatts in a watt, the resolution of {@link #microwatts}.
+     */
+    private static final double MICROWATTS_PER_WATT = 1e6;
+
+    /**
+     * The total power consumption of the plugged-in appliances, in microwatts.
+     */
+    private final LongAdder microwatts = new LongAdder();
+
+    /**
+     * The number of plugged-in appliances with each electromagnetic emission value.
+     */
+    private final ConcurrentSkipListMap<Double, Integer> emissions = new ConcurrentSkipListMap<>();
+
+    /**
+     * Accounts for an appliance that was plugged in or added to the set while plugged in.
+     *
+     * @param appliance The appliance.
+     */
+    void plugged(ElectricalAppliance appliance) {
+        count.increment();
+        microwatts.add(toMicrowatts(appliance));
+        emissions.merge(appliance.getElectromagneticEmission(), 1, Integer::sum);
+    }
+
+    /**
+     * Accounts for an appliance that was unplugged or removed from the set while plugged in.
+     *
+     * @param appliance The appliance.
+     */
+    void unplugged(ElectricalAppliance appliance) {
+        count.decrement();
+        microwatts.add(-toMicrowatts(appliance));
+        emissions.computeIfPresent(appliance.getElectromagneticEmission(), (emission, n) -> n == 1 ? null : n - 1);
+    }
+
+    /**
+     * @return the number of plugged-in appliances.
+     */
+    int count() {
+        return count.intValue();
+    }
+
+    /**
+     * @return the total power consumption of the plugged-in appliances, in watts.
+     */
+    double power() {
+        return microwatts.sum() / MICROWATTS_PER_WATT;
+    }
+
+    /**
+     * @return the power consumption of the appliance, rounded to microwatts.
+     */
+    private static long toMicrowatts(ElectricalAppliance appliance) {
+        return Math.round(appliance.getPower() * MICROWATTS_PER_WATT);
+    }
+
+    /**
+     * @return the largest electromagnetic emission among the plugged-in appliances,
+     * or {@link Double#NaN} if none is plugged in.
+     */
+    double maxEmission() {
+        Map.Entry<Double, Integer> last = emissions.lastEntry();
+        return last == null ? Double.NaN : last.getKey();
+    }
+}
@@ -0,0 +1,373 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * A sorted index of {@link ElectricalApplianceSet} over a numeric property of its elements,
+ * such as the power consumption, answering range, top-k and percentile queries.
+ * <p>
+ * The index keeps the keys, with the elements alongside, in a list of sorted blocks of at most
+ * {@value #MAX_BLOCK_SIZE} entries, every key of a block being no greater than the keys of the
+ * following blocks. An add or remove finds its block by binary search over the first keys of the
+ * blocks and shifts at most one block, so it costs O(log n + B) and never touches the rest of the
+ * index. A full block is split in halves, and a block that runs low is merged with its successor,
+ * which keeps the number of blocks proportional to n / B. A Fenwick tree over the block sizes
+ * locates the block holding any rank by binary descent; an add or remove updates it in
+ * O(log n), and a split or merge, which shifts the list of blocks anyway, rebuilds it in O(n / B).
+ * Queries read the blocks as they are: a range query costs O(log n + k), a top-k query O(k) and
+ * a percentile O(log n).
+ *
+ * @param <T> The type of the indexed elements.
+ */
+final class RangeIndex<T> {
+    /**
+     * The largest number of entries in a block; a block reaching it is split.
+     */
+    private static final int MAX_BLOCK_SIZE = 512;
+
+    /**
+     * The smallest number of entries a block keeps before it is merged with its successor.
+     */
+    private static final int MIN_BLOCK_SIZE = MAX_BLOCK_SIZE / 4;
+
+    /**
+     * Extracts the key of an element.
+     */
+    private final ToDoubleFunction<? super T> keyExtractor;
+
+    /**
+     * The blocks in ascending order of key; none of them is empty.
+     */
+    private final List<Block> blocks = new ArrayList<>();
+
+    /**
+     * The Fenwick tree over the sizes of the {@link #blocks}: entry i, counting from 1, holds the
+     * total size of the {@code i & -i} blocks ending with block i - 1.
+     */
+    private int[] counts = new int[1];
+
+    /**
+     * The number of indexed elements.
+     */
+    private int size;
+
+    /**
+     * A run of consecutive entries of the index.
+     */
+    private static final class Block {
+        /**
+         * The sorted keys; the first {@link #size} are used.
+         */
+        final double[] keys = new double[MAX_BLOCK_SIZE];
+
+        /**
+         * The elements, at the same positions as their keys.
+         */
+        final Object[] values = new Object[MAX_BLOCK_SIZE];
+
+        /**
+         * The number of used entries.
+         */
+        int size;
+
+        /**
+         * @return the first position whose key is not less than the specified one.
+         */
+        int lowerBound(double key) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.compare(keys[mid], key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * @return the first position whose key is greater than the specified one.
+         */
+        int upperBound(double key) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (Double.compare(keys[mid], key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Inserts an entry at the specified position, shifting the following ones up.
+         */
+        void insert(int position, double key, Object value) {
+            System.arraycopy(keys, position, keys, position + 1, size - position);
+            System.arraycopy(values, position, values, position + 1, size - position);
+            keys[position] = key;
+            values[position] = value;
+            size++;
+        }
+
+        /**
+         * Deletes the entry at the specified position, shifting the following ones down.
+         */
+        void delete(int position) {
+            System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+            System.arraycopy(values, position + 1, values, position, size - position - 1);
+            values[--size] = null;
+        }
+
+        /**
+         * Moves the entries from the specified position on to the end of another block.
+         */
+        void moveTo(int from, Block target) {
+            int count = size - from;
+            System.arraycopy(keys, from, target.keys, target.size, count);
+            System.arraycopy(values, from, target.values, target.size, count);
+            Arrays.fill(values, from, size, null);
+            target.size += count;
+            size = from;
+        }
+    }
+
+    /**
+     * Creates an index over the specified elements.
+     *
+     * @param keyExtractor Extracts the key of an element.
+     * @param elements     The elements to index initially.
+     */
+    RangeIndex(ToDoubleFunction<? super T> keyExtractor, List<T> elements) {
+        this.keyExtractor = keyExtractor;
+        List<T> sorted = new ArrayList<>(elements);
+        sorted.sort(Comparator.comparingDouble(keyExtractor));
+        int fill = MAX_BLOCK_SIZE * 3 / 4;
+        Block block = null;
+        for (T element : sorted) {
+            if (block == null || block.size == fill) {
+                block = new Block();
+                blocks.add(block);
+            }
+            block.keys[block.size] = keyExtractor.applyAsDouble(element);
+            block.values[block.size++] = element;
+        }
+        size = sorted.size();
+        rebuildCounts();
+    }
+
+    /**
+     * Adds an element to the index.
+     *
+     * @param element The element added to the owning set.
+     */
+    void add(T element) {
+        double key = keyExtractor.applyAsDouble(element);
+        if (blocks.isEmpty()) {
+            blocks.add(new Block());
+            rebuildCounts();
+        }
+        int b = blockFor(key);
+        Block block = blocks.get(b);
+        if (block.size == MAX_BLOCK_SIZE) {
+            Block upper = new Block();
+            block.moveTo(MAX_BLOCK_SIZE / 2, upper);
+            blocks.add(b + 1, upper);
+            rebuildCounts();
+            if (Double.compare(key, upper.keys[0]) >= 0) {
+                block = upper;
+                b++;
+            }
+        }
+        block.insert(block.upperBound(key), key, element);
+        addToCount(b, 1);
+        size++;
+    }
+
+    /**
+     * Removes an element from the index.
+     *
+     * @param element The element removed from the owning set.
+     */
+    void remove(T element) {
+        double key = keyExtractor.applyAsDouble(element);
+        for (int b = firstBlockNotBelow(key); b < blocks.size(); b++) {
+            Block block = blocks.get(b);
+            for (int i = block.lowerBound(key); i < block.size; i++) {
+                if (Double.compare(block.keys[i], key) != 0) {
+                    return;
+                }
+                if (block.values[i] == element) {
+                    block.delete(i);
+                    addToCount(b, -1);
+                    size--;
+                    rebalance(b);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Empties the index.
+     */
+    void clear() {
+        blocks.clear();
+        counts = new int[1];
+        size = 0;
+    }
+
+    /**
+     * @param lo The smallest key to include.
+     * @param hi The largest key to include.
+     * @return the elements with keys between lo and hi, inclusive, in ascending order of key.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> range(double lo, double hi) {
+        List<T> result = new ArrayList<>();
+        for (int b = firstBlockNotBelow(lo); b < blocks.size(); b++) {
+            Block block = blocks.get(b);
+            for (int i = block.lowerBound(lo); i < block.size; i++) {
+                if (Double.compare(block.keys[i], hi) > 0) {
+                    return Collections.unmodifiableList(result);
+                }
+                result.add((T) block.values[i]);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @param k The number of elements to return.
+     * @return at most k elements with the largest keys, in descending order of key.
+     */
+    @SuppressWarnings("unchecked")
+    List<T> top(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative: " + k);
+        }
+        Object[] result = new Object[Math.min(k, size)];
+        int count = 0;
+        for (int b = blocks.size() - 1; b >= 0 && count < result.length; b--) {
+            Block block = blocks.get(b);
+            for (int i = block.size - 1; i >= 0 && count < result.length; i--) {
+                result[count++] = block.values[i];
+            }
+        }
+        return Collections.unmodifiableList(Arrays.asList((T[]) result));
+    }
+
+    /**
+     * Returns the key at the specified percentile, using the nearest-rank method.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return the key, or {@link Double#NaN} if the index is empty.
+     */
+    double percentile(double percentile) {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (size == 0) {
+            return Double.NaN;
+        }
+        int rank = Math.max((int) Math.ceil(percentile / 100 * size), 1) - 1;
+        int b = 0;
+        for (int step = Integer.highestOneBit(blocks.size()); step > 0; step >>>= 1) {
+            if (b + step <= blocks.size() && counts[b + step] <= rank) {
+                b += step;
+                rank -= counts[b];
+            }
+        }
+        return blocks.get(b).keys[rank];
+    }
+
+    /**
+     * Rebuilds the {@link #counts} after blocks were added or removed, in O(n / B).
+     */
+    private void rebuildCounts() {
+        int[] tree = new int[blocks.size() + 1];
+        for (int i = 1; i < tree.length; i++) {
+            tree[i] += blocks.get(i - 1).size;
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        counts = tree;
+    }
+
+    /**
+     * Records in the {@link #counts} that the size of the block at the specified position changed.
+     */
+    private void addToCount(int b, int delta) {
+        for (int i = b + 1; i < counts.length; i += i & -i) {
+            counts[i] += delta;
+        }
+    }
+
+    /**
+     * @return the position of the block an entry with the specified key is inserted into:
+     * the last block whose first key is not greater than the key, or the first block.
+     */
+    private int blockFor(double key) {
+        int lo = 1;
+        int hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(blocks.get(mid).keys[0], key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    /**
+     * @return the position of the first block that may hold keys not less than the specified one:
+     * the first block whose last key is not less than the key, or the number of blocks if there is none.
+     */
+    private int firstBlockNotBelow(double key) {
+        int lo = 0;
+        int hi = blocks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Block block = blocks.get(mid);
+            if (Double.compare(block.keys[block.size - 1], key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Drops the block at the specified position if it became empty, or merges it with its
+     * successor if it ran low and both fit in half a block.
+     */
+    private void rebalance(int b) {
+        Block block = blocks.get(b);
+        if (block.size == 0) {
+            blocks.remove(b);
+            rebuildCounts();
+            return;
+        }
+        if (block.size < MIN_BLOCK_SIZE && b + 1 < blocks.size()) {
+            Block next = blocks.get(b + 1);
+            if (block.size + next.size <= MAX_BLOCK_SIZE / 2) {
+                next.moveTo(0, block);
+                blocks.remove(b + 1);
+                rebuildCounts();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A secondary index of {@link ElectricalApplianceSet}, grouping its elements by a key such as the brand.
+ * <p>
+ * Each key of a present element maps to a bucket holding the elements with that key in insertion
+ * order. The buckets are updated by the owning set on every modification, and a bucket is dropped
+ * as soon as it becomes empty, so the index only ever holds the keys of present elements.
+ * {@link #view(Object)} returns a live, read-only view that looks up the bucket of its key on
+ * every access, so it keeps reflecting the set when its bucket is dropped and created again, and
+ * querying keys that are absent allocates nothing in the index. A query costs O(1) and reading its
+ * result O(result).
+ *
+ * @param <K> The type of the key.
+ * @param <T> The type of the indexed elements.
+ */
+final class SecondaryIndex<K, T> {
+    /**
+     * Extracts the key of an element.
+     */
+    private final Function<? super T, ? extends K> keyExtractor;
+
+    /**
+     * The elements grouped by key; none of the buckets is empty.
+     */
+    private final Map<K, Set<T>> buckets = new HashMap<>();
+
+    /**
+     * The elements with one key, read through the bucket of that key if it exists.
+     */
+    private final class BucketView extends AbstractSet<T> {
+        /**
+         * The key of the elements.
+         */
+        private final K key;
+
+        /**
+         * @param key The key of the elements.
+         */
+        private BucketView(K key) {
+            this.key = key;
+        }
+
+        /**
+         * @return the bucket of the key, or an empty set if there is none.
+         */
+        private Set<T> bucket() {
+            return buckets.getOrDefault(key, Collections.emptySet());
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return bucket().iterator();
+        }
+
+        @Override
+        public int size() {
+            return bucket().size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return bucket().contains(o);
+        }
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param keyExtractor Extracts the key of an element.
+     */
+    SecondaryIndex(Function<? super T, ? extends K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    /**
+     * Adds an element to the bucket of its key, creating the bucket if it does not exist.
+     *
+     * @param element The element added to the owning set.
+     */
+    void add(T element) {
+        buckets.computeIfAbsent(keyExtractor.apply(element), k -> new LinkedHashSet<>()).add(element);
+    }
+
+    /**
+     * Removes an element from the bucket of its key, dropping the bucket if it becomes empty.
+     *
+     * @param element The element removed from the owning set.
+     */
+    void remove(T element) {
+        K key = keyExtractor.apply(element);
+        Set<T> bucket = buckets.get(key);
+        if (bucket != null && bucket.remove(element) && bucket.isEmpty()) {
+            buckets.remove(key);
+        }
+    }
+
+    /**
+     * Drops all buckets.
+     */
+    void clear() {
+        buckets.clear();
+    }
+
+    /**
+     * @return a live, read-only view of the elements with the specified key.
+     */
+    Set<T> view(K key) {
+        return Collections.unmodifiableSet(new BucketView(key));
+    }
+}
@@ -0,0 +1,86 @@
+import electrical_appliances.ApplianceType;
+import electrical_appliances.ElectricalAppliance;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The elements of an {@link ElectricalApplianceSet} partitioned by {@link ApplianceType}.
+ * <p>
+ * There is one bucket per type, held in an array indexed by the ordinal of the type, so routing
+ * an element to its bucket is an array access rather than a hash lookup. The buckets are updated
+ * by the owning set on every modification, and the read-only views of all buckets are created up
+ * front and exposed through an {@link EnumMap}, so every view handed out stays live.
+ *
+ * @param <T> The type of the partitioned elements.
+ */
+final class TypePartition<T extends ElectricalAppliance> {
+    /**
+     * The buckets, by type ordinal, each holding the elements of its type in insertion order.
+     */
+    private final Set<T>[] buckets;
+
+    /**
+     * The read-only views of the buckets, by type.
+     */
+    private final Map<ApplianceType, Set<T>> views;
+
+    /**
+     * Creates an empty partition.
+     */
+    @SuppressWarnings("unchecked")
+    TypePartition() {
+        ApplianceType[] types = ApplianceType.values();
+        buckets = (Set<T>[]) new Set<?>[types.length];
+        Map<ApplianceType, Set<T>> byType = new EnumMap<>(ApplianceType.class);
+        for (ApplianceType type : types) {
+            buckets[type.ordinal()] = new LinkedHashSet<>();
+            byType.put(type, Collections.unmodifiableSet(buckets[type.ordinal()]));
+        }
+        views = Collections.unmodifiableMap(byType);
+    }
+
+    /**
+     * Adds an element to the bucket of its type.
+     *
+     * @param element The element added to the owning set.
+     */
+    void add(T element) {
+        buckets[element.getType().ordinal()].add(element);
+    }
+
+    /**
+     * Removes an element from the bucket of its type.
+     *
+     * @param element The element removed from the owning set.
+     */
+    void remove(T element) {
+        buckets[element.getType().ordinal()].remove(element);
+    }
+
+    /**
+     * Empties all buckets.
+     */
+    void clear() {
+        for (Set<T> bucket : buckets) {
+            bucket.clear();
+        }
+    }
+
+    /**
+     * @return a live, read-only view of the elements of the specified type.
+     */
+    Set<T> view(ApplianceType type) {
+        return views.get(type);
+    }
+
+    /**
+     * @return a read-only map from every type to the live, read-only view of its elements.
+     */
+    Map<ApplianceType, Set<T>> views() {
+        return views;
+    }
+}
@@ -0,0 +1,168 @@
+package electrical_appliances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Generates large numbers of appliances with a given mix of types and brands.
+ * <p>
+ * The appliances are generated in parallel, in chunks of {@value #CHUNK_SIZE}. Each chunk draws
+ * its values from its own {@link SplittableRandom}, split from the seed of the factory before
+ * the work is distributed, so a factory with a fixed seed generates the same appliances in the
+ * same order no matter how many threads take part. The types and brands are ordered by name
+ * before the random values are mapped to them, so the result does not depend on the iteration
+ * order of the maps passed in either, which for {@code Map.of} and {@code HashMap} with
+ * {@code Class} keys changes from one run to the next.
+ */
+public class ApplianceFactory {
+    /**
+     * The number of appliances generated by one parallel task.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * The constructors of the appliance types the factory can generate.
+     */
+    private static final Map<Class<? extends ElectricalAppliance>,
+            BiFunction<String, ValueSource, ElectricalAppliance>> CONSTRUCTORS = Map.of(
+            ElectricStove.class, ElectricStove::new,
+            Hairdryer.class, Hairdryer::new,
+            Microwave.class, Microwave::new,
+            VacuumCleaner.class, VacuumCleaner::new,
+            WashingMachine.class, WashingMachine::new);
+
+    private final BiFunction<String, ValueSource, ElectricalAppliance>[] types;
+    private final double[] typeThresholds;
+    private final String[] brands;
+    private final double[] brandThresholds;
+    private final long seed;
+
+    /**
+     * Constructs an {@code ApplianceFactory} with a random seed.
+     *
+     * @param typeMix the relative weight of each appliance type to generate
+     * @param brandDistribution the relative weight of each brand
+     * @throws IllegalArgumentException if a map is empty, a weight is not positive
+     * or a type is not one of the appliance classes of this package
+     */
+    public ApplianceFactory(Map<Class<? extends ElectricalAppliance>, Double> typeMix,
+                            Map<String, Double> brandDistribution) {
+        this(typeMix, brandDistribution, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * Constructs an {@code ApplianceFactory} that always generates the same appliances.
+     *
+     * @param typeMix the relative weight of each appliance type to generate
+     * @param brandDistribution the relative weight of each brand
+     * @param seed the seed of the random values
+     * @throws IllegalArgumentException if a map is empty, a weight is not positive
+     * or a type is not one of the appliance classes of this package
+     */
+    @SuppressWarnings("unchecked")
+    public ApplianceFactory(Map<Class<? extends ElectricalAppliance>, Double> typeMix,
+                            Map<String, Double> brandDistribution, long seed) {
+        if (typeMix.isEmpty() || brandDistribution.isEmpty()) {
+            throw new IllegalArgumentException("Type mix and brand distribution cannot be empty.");
+        }
+        this.types = (BiFunction<String, ValueSource, ElectricalAppliance>[]) new BiFunction<?, ?, ?>[typeMix.size()];
+        this.typeThresholds = new double[typeMix.size()];
+        List<Map.Entry<Class<? extends ElectricalAppliance>, Double>> typeEntries = new ArrayList<>(typeMix.entrySet());
+        typeEntries.sort(Comparator.comparing(entry -> entry.getKey().getName()));
+        Double[] typeWeights = new Double[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Map.Entry<Class<? extends ElectricalAppliance>, Double> entry = typeEntries.get(i);
+            BiFunction<String, ValueSource, ElectricalAppliance> constructor = CONSTRUCTORS.get(entry.getKey());
+            if (constructor == null) {
+                throw new IllegalArgumentException("Unsupported appliance type: " + entry.getKey().getName());
+            }
+            types[i] = constructor;
+            typeWeights[i] = entry.getValue();
+        }
+        cumulate(typeWeights, typeThresholds);
+
+        this.brands = brandDistribution.keySet().toArray(new String[0]);
+        Arrays.sort(brands, Comparator.nullsFirst(Comparator.naturalOrder()));
+        this.brandThresholds = new double[brands.length];
+        Double[] brandWeights = new Double[brands.length];
+        for (int j = 0; j < brands.length; j++) {
+            brandWeights[j] = brandDistribution.get(brands[j]);
+        }
+        cumulate(brandWeights, brandThresholds);
+        this.seed = seed;
+    }
+
+    /**
+     * Turns weights into cumulative thresholds between 0 and 1.
+     *
+     * @param weights the relative weights
+     * @param thresholds the array receiving the thresholds
+     * @throws IllegalArgumentException if a weight is not positive
+     */
+    private static void cumulate(Double[] weights, double[] thresholds) {
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double weight = Objects.requireNonNull(weights[i]);
+            if (!(weight > 0)) {
+                throw new IllegalArgumentException("Weights must be positive.");
+            }
+            total += weight;
+            thresholds[i] = total;
+        }
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] /= total;
+        }
+        thresholds[thresholds.length - 1] = 1;
+    }
+
+    /**
+     * Generates the specified number of appliances, using all available cores.
+     *
+     * @param count the number of appliances to generate
+     * @return the generated appliances
+     * @throws IllegalArgumentException if count is negative
+     */
+    public ElectricalAppliance[] generate(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative.");
+        }
+        ElectricalAppliance[] appliances = new ElectricalAppliance[count];
+        int chunks = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            streams[i] = root.split();
+        }
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            SplittableRandom random = streams[chunk];
+            ValueSource valueSource = ValueSource.of(random);
+            int to = Math.min(count, (chunk + 1) * CHUNK_SIZE);
+            for (int i = chunk * CHUNK_SIZE; i < to; i++) {
+                BiFunction<String, ValueSource, ElectricalAppliance> type = types[pick(typeThresholds, random)];
+                appliances[i] = type.apply(brands[pick(brandThresholds, random)], valueSource);
+            }
+        });
+        return appliances;
+    }
+
+    /**
+     * Picks a random position according to cumulative thresholds.
+     *
+     * @param thresholds the cumulative thresholds
+     * @param random the generator to draw from
+     * @return the picked position
+     */
+    private static int pick(double[] thresholds, SplittableRandom random) {
+        int i = Arrays.binarySearch(thresholds, random.nextDouble());
+        i = i < 0 ? -i - 1 : i + 1;
+        return Math.min(i, thresholds.length - 1);
+    }
+}
@@ -0,0 +1,74 @@
+package electrical_appliances;
+
+/**
+ * The types of electrical appliances, one for each appliance class of this package.
+ * <p>
+ * Every appliance carries its type from construction, so code that needs to tell appliances
+ * apart, such as {@link ElectricalAppliance#getName()} or the per-type partitions of appliance
+ * sets, can switch on the type instead of inspecting the class of the appliance. Instances of
+ * subclasses have the type of the appliance class they derive from.
+ */
+public enum ApplianceType {
+    /** An {@link ElectricStove}. */
+    ELECTRIC_STOVE("Electric stove"),
+    /** A {@link Hairdryer}. */
+    HAIRDRYER("Hairdryer"),
+    /** A {@link Microwave}. */
+    MICROWAVE("Microwave"),
+    /** A {@link VacuumCleaner}. */
+    VACUUM_CLEANER("Vacuum cleaner"),
+    /** A {@link WashingMachine}. */
+    WASHING_MACHINE("Washing machine"),
+    /** An appliance of a class defined outside this package. */
+    OTHER("Some electrical appliance");
+
+    private final String displayName;
+
+    /**
+     * Constructs an appliance type.
+     *
+     * @param displayName the name shown for appliances of this type
+     */
+    ApplianceType(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Retrieves the name shown for appliances of this type.
+     *
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Creates an appliance of this type with specified brand, power and electromagnetic emission
+     * values, for example when restoring a saved appliance. An appliance saved while plugged in is
+     * created plugged in without a plug event, so neither the plug event sink nor any listener is
+     * notified: restoring an appliance does not change its status.
+     *
+     * @param brand the brand of the appliance
+     * @param power the power consumption in watts
+     * @param electromagneticEmission the electromagnetic emission in microtesla
+     * @param pluggedIn whether the appliance is plugged in
+     * @return the new appliance
+     * @throws IllegalArgumentException if power or electromagneticEmission is negative
+     * @throws UnsupportedOperationException if this type is {@link #OTHER}
+     */
+    public ElectricalAppliance create(String brand, double power, double electromagneticEmission,
+                                      boolean pluggedIn) {
+        ElectricalAppliance appliance = switch (this) {
+            case ELECTRIC_STOVE -> new ElectricStove(brand, power, electromagneticEmission);
+            case HAIRDRYER -> new Hairdryer(brand, power, electromagneticEmission);
+            case MICROWAVE -> new Microwave(brand, power, electromagneticEmission);
+            case VACUUM_CLEANER -> new VacuumCleaner(brand, power, electromagneticEmission);
+            case WASHING_MACHINE -> new WashingMachine(brand, power, electromagneticEmission);
+            case OTHER -> throw new UnsupportedOperationException("Appliances of type OTHER cannot be created.");
+        };
+        if (pluggedIn) {
+            appliance.restorePluggedIn();
+        }
+        return appliance;
+    }
+}
@@ -0,0 +1,141 @@
+package electrical_appliances;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link PlugListener} that logs plug events asynchronously, in batches.
+ * <p>
+ * The plugging thread only claims a slot in a bounded ring buffer and stores the appliance
+ * and its new status there; it never formats a message or touches the output stream.
+ * A single background thread drains the buffer, formats a whole batch of messages and
+ * writes it with one call. When the buffer is full, events are dropped and counted instead
+ * of blocking the plugging thread.
+ * <p>
+ * Install it with {@link ElectricalAppliance#setPlugEventSink(PlugListener)} and
+ * {@link #close() close} it to flush the remaining events.
+ */
+public class AsyncPlugLogger implements PlugListener, AutoCloseable {
+    /**
+     * The time the background thread waits before checking an empty buffer again.
+     */
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final AtomicReferenceArray<ElectricalAppliance> appliances;
+    private final boolean[] states;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+    private final PrintStream out;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * Constructs an {@code AsyncPlugLogger} writing to {@link System#out}
+     * with a buffer of 8192 events.
+     */
+    public AsyncPlugLogger() {
+        this(System.out, 8192);
+    }
+
+    /**
+     * Constructs an {@code AsyncPlugLogger} and starts its background thread.
+     *
+     * @param out the stream to write the messages to
+     * @param capacity the number of events the buffer can hold, rounded up to a power of two
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public AsyncPlugLogger(PrintStream out, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        this.appliances = new AtomicReferenceArray<>(size);
+        this.states = new boolean[size];
+        this.mask = size - 1;
+        this.out = out;
+        this.worker = new Thread(this::drainLoop, "async-plug-logger");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Enqueues a plug event, or drops it if the buffer is full.
+     *
+     * @param appliance the appliance that was plugged in or unplugged
+     * @param pluggedIn the new plugging status
+     */
+    @Override
+    public void plugStateChanged(ElectricalAppliance appliance, boolean pluggedIn) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (closed || sequence - head > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        int slot = (int) sequence & mask;
+        states[slot] = pluggedIn;
+        appliances.set(slot, appliance);
+    }
+
+    /**
+     * Retrieves the number of events dropped because the buffer was full or the logger was closed.
+     *
+     * @return the number of dropped events
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stops the background thread after it has written all buffered events.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Drains the buffer in batches until the logger is closed and the buffer is empty.
+     */
+    private void drainLoop() {
+        StringBuilder batch = new StringBuilder();
+        while (true) {
+            long h = head;
+            while (true) {
+                int slot = (int) h & mask;
+                ElectricalAppliance appliance = appliances.get(slot);
+                if (appliance == null) {
+                    break;
+                }
+                boolean pluggedIn = states[slot];
+                appliances.set(slot, null);
+                h++;
+                head = h;
+                batch.append(appliance.getName()).append(" by ").append(appliance.getBrand())
+                        .append(pluggedIn ? " was plugged in" : " was unplugged").append(System.lineSeparator());
+            }
+            if (batch.length() > 0) {
+                out.print(batch);
+                out.flush();
+                batch.setLength(0);
+            } else if (closed && tail.get() == h) {
+                return;
+            } else {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+}
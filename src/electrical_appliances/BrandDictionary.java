@@ -0,0 +1,100 @@
+package electrical_appliances;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The process-wide dictionary of appliance brands.
+ * <p>
+ * Every distinct brand name is assigned a small integer code, in order of first use, and one
+ * canonical {@code String} instance. Appliances store only the code, so millions of appliances of
+ * a few hundred brands share a few hundred strings, and comparing brands is comparing integers.
+ * Codes are stable for the lifetime of the process but not between runs.
+ * <p>
+ * Encoding a known brand is a lock-free lookup and decoding is an array read. Brands are never
+ * removed, so the dictionary is meant for catalogues with a bounded set of brand names.
+ */
+public final class BrandDictionary {
+    /**
+     * The code standing for the absence of a brand.
+     */
+    public static final int NO_BRAND = -1;
+
+    private static final ConcurrentHashMap<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static volatile String[] brands = new String[64];
+    private static int size;
+
+    private BrandDictionary() {
+    }
+
+    /**
+     * Returns the code of the brand, assigning a new one if the brand has not been seen before.
+     *
+     * @param brand the brand name, or {@code null}
+     * @return the code of the brand, or {@link #NO_BRAND} if it is {@code null}
+     */
+    public static int encode(String brand) {
+        if (brand == null) {
+            return NO_BRAND;
+        }
+        Integer code = CODES.get(brand);
+        return code != null ? code : register(brand);
+    }
+
+    /**
+     * Returns the canonical brand name for the code.
+     *
+     * @param code a code returned by {@link #encode(String)}, or {@link #NO_BRAND}
+     * @return the brand name, or {@code null} for {@link #NO_BRAND}
+     * @throws IllegalArgumentException if the code has not been assigned
+     */
+    public static String decode(int code) {
+        if (code == NO_BRAND) {
+            return null;
+        }
+        String[] current = brands;
+        if (code < 0 || code >= current.length || current[code] == null) {
+            throw new IllegalArgumentException("Unknown brand code: " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * Returns the canonical instance of the brand name.
+     *
+     * @param brand the brand name, or {@code null}
+     * @return the instance equal to the brand shared by all appliances, or {@code null}
+     */
+    public static String canonical(String brand) {
+        return decode(encode(brand));
+    }
+
+    /**
+     * @return the number of distinct brands seen so far
+     */
+    public static int size() {
+        return CODES.size();
+    }
+
+    /**
+     * Assigns the next code to a brand. The brand is stored in the array before its code is
+     * published in the map, so any thread that obtains the code can decode it.
+     *
+     * @param brand the brand name
+     * @return the code of the brand
+     */
+    private static synchronized int register(String brand) {
+        Integer existing = CODES.get(brand);
+        if (existing != null) {
+            return existing;
+        }
+        String[] current = brands;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = brand;
+        brands = current;
+        CODES.put(brand, size);
+        return size++;
+    }
+}
@@ -1,7 +1,5 @@
 package electrical_appliances;
 
-import java.util.Random;
-
 /**
  * Represents an electric stove appliance.
  * Generates random power consumption and electromagnetic emission values
@@ -16,48 +14,53 @@ public class ElectricStove extends ElectricalAppliance {
      * @param brand the brand of the electric stove
      */
     public ElectricStove(String brand) {
-        super(brand, getRandomPower(), getRandomElectromagneticEmission());
+        this(brand, getDefaultValueSource());
     }
 
     /**
-     * Generates a random power consumption value for the electric stove.
-     * The value is within the range of 1000 to 3000 watts.
+     * Constructs an {@code ElectricStove} object with a specified brand, drawing the
+     * power consumption and electromagnetic emission values from the specified source.
      *
-     * @return a random power consumption value
+     * @param brand the brand of the electric stove
+     * @param valueSource the source of the random values
      */
-    private static double getRandomPower() {
-        return getRandomValue(1000, 3000);
+    public ElectricStove(String brand, ValueSource valueSource) {
+        super(ApplianceType.ELECTRIC_STOVE, brand, getRandomPower(valueSource),
+                getRandomElectromagneticEmission(valueSource));
     }
 
     /**
-     * Generates a random electromagnetic emission value for the electric stove.
-     * The value is within the range of 40 to 50 microteslas.
+     * Constructs an {@code ElectricStove} object with specified brand, power
+     * and electromagnetic emission values, for example when restoring a saved electric stove.
      *
-     * @return a random electromagnetic emission value
+     * @param brand the brand of the electric stove
+     * @param power the power consumption in watts
+     * @param electromagneticEmission the electromagnetic emission in microtesla
+     * @throws IllegalArgumentException if power or electromagneticEmission is negative
      */
-    private static double getRandomElectromagneticEmission() {
-        return getRandomValue(40, 50);
+    public ElectricStove(String brand, double power, double electromagneticEmission) {
+        super(ApplianceType.ELECTRIC_STOVE, brand, power, electromagneticEmission);
     }
 
     /**
-     * Generates a random value within a specified range.
+     * Generates a random power consumption value for the electric stove.
+     * The value is within the range of 1000 to 3000 watts.
      *
-     * @param min the minimum value of the range (inclusive)
-     * @param max the maximum value of the range (inclusive)
-     * @return a random value between min and max
+     * @param valueSource the source of the random values
+     * @return a random power consumption value
      */
-    private static double getRandomValue(double min, double max) {
-        return min + (max - min) * new Random().nextDouble();
+    private static double getRandomPower(ValueSource valueSource) {
+        return valueSource.nextDouble(1000, 3000);
     }
 
     /**
-     * Returns the name of this electrical appliance.
-     * For this class, it always returns "Electric stove".
+     * Generates a random electromagnetic emission value for the electric stove.
+     * The value is within the range of 40 to 50 microteslas.
      *
-     * @return the name of the appliance
+     * @param valueSource the source of the random values
+     * @return a random electromagnetic emission value
      */
-    @Override
-    public String getName() {
-        return "Electric stove";
+    private static double getRandomElectromagneticEmission(ValueSource valueSource) {
+        return valueSource.nextDouble(40, 50);
     }
 }
@@ -1,15 +1,52 @@
 package electrical_appliances;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Objects;
+
 /**
  * Represents a general electrical appliance.
  * Contains information about the brand, power consumption,
  * electromagnetic emission, and plugging status.
+ * <p>
+ * Two appliances are equal if they are of the same concrete class and have the same
+ * brand, power and electromagnetic emission. The plugging status is not part of the
+ * identity. The hash code is computed once at construction. Brands are stored as codes of
+ * the {@link BrandDictionary}, so appliances of the same brand share one brand string and
+ * brands are compared as integers. The {@link ApplianceType} of an appliance is fixed at construction
+ * and provides its name without inspecting its class.
+ * <p>
+ * Changes of the plugging status are published to the registered {@link PlugListener}s,
+ * which lets containers such as appliance sets keep running totals up to date, and to the
+ * process-wide plug event sink, which does nothing by default. Install an {@link AsyncPlugLogger}
+ * as the sink to log the changes without slowing down the plugging threads.
  */
 public abstract class ElectricalAppliance {
-    private final String brand;
+    private static final PlugListener[] NO_LISTENERS = new PlugListener[0];
+    private static final VarHandle IS_PLUGGED_IN;
+
+    static {
+        try {
+            IS_PLUGGED_IN = MethodHandles.lookup()
+                    .findVarHandle(ElectricalAppliance.class, "isPluggedIn", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final PlugListener NO_OP_SINK = (appliance, pluggedIn) -> { };
+
+    private static volatile ValueSource defaultValueSource = ValueSource.threadLocalRandom();
+    private static volatile PlugListener plugEventSink = NO_OP_SINK;
+
+    private final ApplianceType type;
+    private final int brandCode;
     private final double power;
     private final double electromagneticEmission;
-    private boolean isPluggedIn;
+    private volatile boolean isPluggedIn;
+    private final int hash;
+    private volatile PlugListener[] plugListeners = NO_LISTENERS;
 
     /**
      * Constructs an {@code ElectricalAppliance} object with specified brand, power
@@ -21,29 +58,154 @@ public abstract class ElectricalAppliance {
      * @throws IllegalArgumentException if power or electromagneticEmission is negative
      */
     public ElectricalAppliance(String brand, double power, double electromagneticEmission) {
+        this(ApplianceType.OTHER, brand, power, electromagneticEmission);
+    }
+
+    /**
+     * Constructs an {@code ElectricalAppliance} object of the specified type with specified brand,
+     * power and electromagnetic emission values.
+     *
+     * @param type the type of the appliance
+     * @param brand the brand of the appliance
+     * @param power the power consumption of the appliance in watts
+     * @param electromagneticEmission the electromagnetic emission in microtesla
+     * @throws IllegalArgumentException if power or electromagneticEmission is negative
+     * @throws NullPointerException if type is {@code null}
+     */
+    protected ElectricalAppliance(ApplianceType type, String brand, double power, double electromagneticEmission) {
         if (power < 0 || electromagneticEmission < 0) {
             throw new IllegalArgumentException("Power and electromagnetic emission cannot be negative.");
         }
-        this.brand = brand;
+        this.type = Objects.requireNonNull(type);
+        this.brandCode = BrandDictionary.encode(brand);
         this.power = power;
         this.electromagneticEmission = electromagneticEmission;
         this.isPluggedIn = false;
+        this.hash = computeHash();
+    }
+
+    /**
+     * Computes the hash code from the identity of the appliance. The class name is used
+     * instead of the {@link Class} object so that the value is stable between runs.
+     *
+     * @return the hash code of the appliance
+     */
+    private int computeHash() {
+        int h = getClass().getName().hashCode();
+        h = 31 * h + Objects.hashCode(getBrand());
+        h = 31 * h + Double.hashCode(power);
+        h = 31 * h + Double.hashCode(electromagneticEmission);
+        return h;
+    }
+
+    /**
+     * Retrieves the source of random values used by the appliance constructors that take only a brand.
+     *
+     * @return the default value source
+     */
+    public static ValueSource getDefaultValueSource() {
+        return defaultValueSource;
+    }
+
+    /**
+     * Replaces the source of random values used by the appliance constructors that take only a brand,
+     * for example with a {@link ValueSource#seeded(long) seeded} one for reproducible runs.
+     *
+     * @param valueSource the new default value source
+     * @throws NullPointerException if valueSource is {@code null}
+     */
+    public static void setDefaultValueSource(ValueSource valueSource) {
+        defaultValueSource = Objects.requireNonNull(valueSource);
+    }
+
+    /**
+     * Retrieves the sink receiving the plug events of all appliances.
+     *
+     * @return the plug event sink
+     */
+    public static PlugListener getPlugEventSink() {
+        return plugEventSink;
+    }
+
+    /**
+     * Replaces the sink receiving the plug events of all appliances, for example with an
+     * {@link AsyncPlugLogger}. The sink is called on the plugging thread, so it should be cheap.
+     *
+     * @param sink the new sink, or {@code null} to discard the events
+     */
+    public static void setPlugEventSink(PlugListener sink) {
+        plugEventSink = sink == null ? NO_OP_SINK : sink;
     }
 
     /**
      * Plugs in the appliance.
      */
     public void plugIn() {
-        System.out.println(getName() + " by " + brand + " was plugged in");
-        isPluggedIn = true;
+        if (IS_PLUGGED_IN.compareAndSet(this, false, true)) {
+            firePlugStateChanged(true);
+        }
     }
 
     /**
      * Unplugs the appliance.
      */
     public void unplug() {
-        System.out.println(getName() + " by " + brand + " was unplugged");
-        isPluggedIn = false;
+        if (IS_PLUGGED_IN.compareAndSet(this, true, false)) {
+            firePlugStateChanged(false);
+        }
+    }
+
+    /**
+     * Marks a newly created appliance as plugged in without publishing a plug event, for appliances
+     * restored from storage, whose status is restored rather than changed. Must be called before
+     * the appliance is shared.
+     */
+    void restorePluggedIn() {
+        isPluggedIn = true;
+    }
+
+    /**
+     * Registers a listener to be notified whenever the appliance is plugged in or unplugged.
+     * A listener registered several times is notified several times.
+     *
+     * @param listener the listener to register
+     * @throws NullPointerException if listener is {@code null}
+     */
+    public synchronized void addPlugListener(PlugListener listener) {
+        Objects.requireNonNull(listener);
+        PlugListener[] listeners = Arrays.copyOf(plugListeners, plugListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        plugListeners = listeners;
+    }
+
+    /**
+     * Unregisters one registration of a listener. Does nothing if the listener is not registered.
+     *
+     * @param listener the listener to unregister
+     */
+    public synchronized void removePlugListener(PlugListener listener) {
+        PlugListener[] listeners = plugListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                PlugListener[] remaining = new PlugListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, remaining.length - i);
+                plugListeners = remaining.length == 0 ? NO_LISTENERS : remaining;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notifies the plug event sink and the registered listeners of a change of the plugging status.
+     *
+     * @param pluggedIn the new plugging status
+     */
+    private void firePlugStateChanged(boolean pluggedIn) {
+        plugEventSink.plugStateChanged(this, pluggedIn);
+        for (PlugListener listener : plugListeners) {
+            listener.plugStateChanged(this, pluggedIn);
+        }
     }
 
     /**
@@ -79,16 +241,66 @@ public abstract class ElectricalAppliance {
      * @return the brand name
      */
     public String getBrand() {
-        return brand;
+        return BrandDictionary.decode(brandCode);
+    }
+
+    /**
+     * Retrieves the code of the brand in the {@link BrandDictionary}.
+     *
+     * @return the brand code, or {@link BrandDictionary#NO_BRAND} if the appliance has no brand
+     */
+    public int getBrandCode() {
+        return brandCode;
     }
 
     /**
-     * Retrieves the name of the appliance. Can be overridden by subclasses.
+     * Retrieves the type of the appliance.
+     *
+     * @return the appliance type
+     */
+    public ApplianceType getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the name of the appliance, by default the display name of its type.
+     * Can be overridden by subclasses; subclasses of the appliance classes of this package that
+     * do not override it have the name of the class they derive from.
      *
      * @return the name of the appliance
      */
     public String getName() {
-        return "Some electrical appliance";
+        return type.getDisplayName();
+    }
+
+    /**
+     * Checks whether the specified object is an appliance of the same class
+     * with the same brand, power and electromagnetic emission.
+     *
+     * @param o the object to compare with
+     * @return {@code true} if the object represents the same appliance
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || o.getClass() != getClass()) {
+            return false;
+        }
+        ElectricalAppliance other = (ElectricalAppliance) o;
+        return hash == other.hash
+                && Double.compare(power, other.power) == 0
+                && Double.compare(electromagneticEmission, other.electromagneticEmission) == 0
+                && brandCode == other.brandCode;
+    }
+
+    /**
+     * @return the hash code computed at construction
+     */
+    @Override
+    public final int hashCode() {
+        return hash;
     }
 
     /**
@@ -96,6 +308,6 @@ public abstract class ElectricalAppliance {
      */
     @Override
     public String toString() {
-        return String.format("%s", getName());
+        return getName();
     }
 }
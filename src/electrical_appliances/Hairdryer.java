@@ -1,7 +1,5 @@
 package electrical_appliances;
 
-import java.util.Random;
-
 /**
  * Represents a hairdryer appliance.
  * Generates random power consumption and electromagnetic emission values
@@ -16,48 +14,53 @@ public class Hairdryer extends ElectricalAppliance {
      * @param brand the brand of the hairdryer
      */
     public Hairdryer(String brand) {
-        super(brand, getRandomPower(), getRandomElectromagneticEmission());
+        this(brand, getDefaultValueSource());
     }
 
     /**
-     * Generates a random power consumption value for the hairdryer.
-     * The value is within the range of 500 to 1000 watts.
+     * Constructs a {@code Hairdryer} object with a specified brand, drawing the
+     * power consumption and electromagnetic emission values from the specified source.
      *
-     * @return a random power consumption value
+     * @param brand the brand of the hairdryer
+     * @param valueSource the source of the random values
      */
-    private static double getRandomPower() {
-        return getRandomValue(500, 1000);
+    public Hairdryer(String brand, ValueSource valueSource) {
+        super(ApplianceType.HAIRDRYER, brand, getRandomPower(valueSource),
+                getRandomElectromagneticEmission(valueSource));
     }
 
     /**
-     * Generates a random electromagnetic emission value for the hairdryer.
-     * The value is within the range of 1500 to 2000 microteslas.
+     * Constructs a {@code Hairdryer} object with specified brand, power
+     * and electromagnetic emission values, for example when restoring a saved hairdryer.
      *
-     * @return a random electromagnetic emission value
+     * @param brand the brand of the hairdryer
+     * @param power the power consumption in watts
+     * @param electromagneticEmission the electromagnetic emission in microtesla
+     * @throws IllegalArgumentException if power or electromagneticEmission is negative
      */
-    private static double getRandomElectromagneticEmission() {
-        return getRandomValue(1500, 2000);
+    public Hairdryer(String brand, double power, double electromagneticEmission) {
+        super(ApplianceType.HAIRDRYER, brand, power, electromagneticEmission);
     }
 
     /**
-     * Generates a random value within a specified range.
+     * Generates a random power consumption value for the hairdryer.
+     * The value is within the range of 500 to 1000 watts.
      *
-     * @param min the minimum value of the range (inclusive)
-     * @param max the maximum value of the range (inclusive)
-     * @return a random value between min and max
+     * @param valueSource the source of the random values
+     * @return a random power consumption value
      */
-    private static double getRandomValue(double min, double max) {
-        return min + (max - min) * new Random().nextDouble();
+    private static double getRandomPower(ValueSource valueSource) {
+        return valueSource.nextDouble(500, 1000);
     }
 
     /**
-     * Returns the name of this electrical appliance.
-     * For this class, it always returns simple name of the class.
+     * Generates a random electromagnetic emission value for the hairdryer.
+     * The value is within the range of 1500 to 2000 microteslas.
      *
-     * @return the name of the appliance
+     * @param valueSource the source of the random values
+     * @return a random electromagnetic emission value
      */
-    @Override
-    public String getName() {
-        return this.getClass().getSimpleName();
+    private static double getRandomElectromagneticEmission(ValueSource valueSource) {
+        return valueSource.nextDouble(1500, 2000);
     }
 }
@@ -1,7 +1,5 @@
 package electrical_appliances;
 
-import java.util.Random;
-
 /**
  * Represents a microwave appliance.
  * Generates random power consumption and electromagnetic emission values
@@ -16,48 +14,53 @@ public class Microwave extends ElectricalAppliance {
      * @param brand the brand of the microwave
      */
     public Microwave(String brand) {
-        super(brand, getRandomPower(), getRandomElectromagneticEmission());
+        this(brand, getDefaultValueSource());
     }
 
     /**
-     * Generates a random power consumption value for the microwave.
-     * The value is within the range of 600 to 1000 watts.
+     * Constructs a {@code Microwave} object with a specified brand, drawing the
+     * power consumption and electromagnetic emission values from the specified source.
      *
-     * @return a random power consumption value
+     * @param brand the brand of the microwave
+     * @param valueSource the source of the random values
      */
-    private static double getRandomPower() {
-        return getRandomValue(600, 1000);
+    public Microwave(String brand, ValueSource valueSource) {
+        super(ApplianceType.MICROWAVE, brand, getRandomPower(valueSource),
+                getRandomElectromagneticEmission(valueSource));
     }
 
     /**
-     * Generates a random electromagnetic emission value for the microwave.
-     * The value is within the range of 150 to 200 microteslas.
+     * Constructs a {@code Microwave} object with specified brand, power
+     * and electromagnetic emission values, for example when restoring a saved microwave.
      *
-     * @return a random electromagnetic emission value
+     * @param brand the brand of the microwave
+     * @param power the power consumption in watts
+     * @param electromagneticEmission the electromagnetic emission in microtesla
+     * @throws IllegalArgumentException if power or electromagneticEmission is negative
      */
-    private static double getRandomElectromagneticEmission() {
-        return getRandomValue(150, 200);
+    public Microwave(String brand, double power, double electromagneticEmission) {
+        super(ApplianceType.MICROWAVE, brand, power, electromagneticEmission);
     }
 
     /**
-     * Generates a random value within a specified range.
+     * Generates a random power consumption value for the microwave.
+     * The value is within the range of 600 to 1000 watts.
      *
-     * @param min the minimum value of the range (inclusive)
-     * @param max the maximum value of the range (inclusive)
-     * @return a random value between min and max
+     * @param valueSource the source of the random values
+     * @return a random power consumption value
      */
-    private static double getRandomValue(double min, double max) {
-        return min + (max - min) * new Random().nextDouble();
+    private static double getRandomPower(ValueSource valueSource) {
+        return valueSource.nextDouble(600, 1000);
     }
 
     /**
-     * Returns the name of this electrical appliance.
-     * For this class, it always returns simple name of the class.
+     * Generates a random electromagnetic emission value for the microwave.
+     * The value is within the range of 150 to 200 microteslas.
      *
-     * @return the name of the appliance
+     * @param valueSource the source of the random values
+     * @return a random electromagnetic emission value
      */
-    @Override
-    public String getName() {
-        return this.getClass().getSimpleName();
+    private static double getRandomElectromagneticEmission(ValueSource valueSource) {
+        return valueSource.nextDouble(150, 200);
     }
 }
@@ -0,0 +1,17 @@
+package electrical_appliances;
+
+/**
+ * Receives the changes of the plugging status of an appliance.
+ * Listeners are registered with {@link ElectricalAppliance#addPlugListener(PlugListener)}
+ * and are called on the thread that plugged in or unplugged the appliance.
+ */
+@FunctionalInterface
+public interface PlugListener {
+    /**
+     * Called after the plugging status of an appliance has changed.
+     *
+     * @param appliance the appliance that was plugged in or unplugged
+     * @param pluggedIn {@code true} if the appliance was plugged in, {@code false} if it was unplugged
+     */
+    void plugStateChanged(ElectricalAppliance appliance, boolean pluggedIn);
+}
@@ -1,7 +1,5 @@
 package electrical_appliances;
 
-import java.util.Random;
-
 /**
  * Represents a vacuum cleaner appliance.
  * Generates random power consumption and electromagnetic emission values
@@ -16,48 +14,53 @@ public class VacuumCleaner extends ElectricalAppliance {
      * @param brand the brand of the vacuum cleaner
      */
     public VacuumCleaner(String brand) {
-        super(brand, getRandomPower(), getRandomElectromagneticEmission());
+        this(brand, getDefaultValueSource());
     }
 
     /**
-     * Generates a random power consumption value for the vacuum cleaner.
-     * The value is within the range of 500 to 2000 watts.
+     * Constructs a {@code VacuumCleaner} object with a specified brand, drawing the
+     * power consumption and electromagnetic emission values from the specified source.
      *
-     * @return a random power consumption value
+     * @param brand the brand of the vacuum cleaner
+     * @param valueSource the source of the random values
      */
-    private static double getRandomPower() {
-        return getRandomValue(500, 2000);
+    public VacuumCleaner(String brand, ValueSource valueSource) {
+        super(ApplianceType.VACUUM_CLEANER, brand, getRandomPower(valueSource),
+                getRandomElectromagneticEmission(valueSource));
     }
 
     /**
-     * Generates a random electromagnetic emission value for the vacuum cleaner.
-     * The value is within the range of 600 to 800 microteslas.
+     * Constructs a {@code VacuumCleaner} object with specified brand, power
+     * and electromagnetic emission values, for example when restoring a saved vacuum cleaner.
      *
-     * @return a random electromagnetic emission value
+     * @param brand the brand of the vacuum cleaner
+     * @param power the power consumption in watts
+     * @param electromagneticEmission the electromagnetic emission in microtesla
+     * @throws IllegalArgumentException if power or electromagneticEmission is negative
      */
-    private static double getRandomElectromagneticEmission() {
-        return getRandomValue(600, 800);
+    public VacuumCleaner(String brand, double power, double electromagneticEmission) {
+        super(ApplianceType.VACUUM_CLEANER, brand, power, electromagneticEmission);
     }
 
     /**
-     * Generates a random value within a specified range.
+     * Generates a random power consumption value for the vacuum cleaner.
+     * The value is within the range of 500 to 2000 watts.
      *
-     * @param min the minimum value of the range (inclusive)
-     * @param max the maximum value of the range (inclusive)
-     * @return a random value between min and max
+     * @param valueSource the source of the random values
+     * @return a random power consumption value
      */
-    private static double getRandomValue(double min, double max) {
-        return min + (max - min) * new Random().nextDouble();
+    private static double getRandomPower(ValueSource valueSource) {
+        return valueSource.nextDouble(500, 2000);
     }
 
     /**
-     * Returns the name of this electrical appliance.
-     * For this class, it always returns "Vacuum cleaner".
+     * Generates a random electromagnetic emission value for the vacuum cleaner.
+     * The value is within the range of 600 to 800 microteslas.
      *
-     * @return the name of the appliance
+     * @param valueSource the source of the random values
+     * @return a random electromagnetic emission value
      */
-    @Override
-    public String getName() {
-        return "Vacuum cleaner";
+    private static double getRandomElectromagneticEmission(ValueSource valueSource) {
+        return valueSource.nextDouble(600, 800);
     }
 }
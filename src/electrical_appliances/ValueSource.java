@@ -0,0 +1,65 @@
+package electrical_appliances;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A source of the random values used to generate the power consumption and
+ * electromagnetic emission of new appliances.
+ * <p>
+ * The appliance constructors that take only a brand use the default source of
+ * {@link ElectricalAppliance#getDefaultValueSource()}, which is backed by
+ * {@link ThreadLocalRandom} and therefore needs neither seeding nor synchronization.
+ * A {@link #seeded(long) seeded} source produces the same appliances on every run.
+ */
+@FunctionalInterface
+public interface ValueSource {
+    /**
+     * Returns the next random value.
+     *
+     * @return a value between 0 (inclusive) and 1 (exclusive)
+     */
+    double nextDouble();
+
+    /**
+     * Returns the next random value within a specified range.
+     *
+     * @param min the minimum value of the range (inclusive)
+     * @param max the maximum value of the range (exclusive)
+     * @return a random value between min and max
+     */
+    default double nextDouble(double min, double max) {
+        return min + (max - min) * nextDouble();
+    }
+
+    /**
+     * Returns a source backed by {@link ThreadLocalRandom}, which is safe to share between threads.
+     *
+     * @return the thread-local source
+     */
+    static ValueSource threadLocalRandom() {
+        return () -> ThreadLocalRandom.current().nextDouble();
+    }
+
+    /**
+     * Returns a source backed by the specified {@link SplittableRandom}.
+     * The source is not thread-safe; give each thread its own {@link SplittableRandom#split() split} generator.
+     *
+     * @param random the generator to draw values from
+     * @return the source
+     */
+    static ValueSource of(SplittableRandom random) {
+        return random::nextDouble;
+    }
+
+    /**
+     * Returns a deterministic source: two sources created with the same seed produce the same values.
+     * The source is not thread-safe.
+     *
+     * @param seed the initial seed
+     * @return the seeded source
+     */
+    static ValueSource seeded(long seed) {
+        return of(new SplittableRandom(seed));
+    }
+}
@@ -0,0 +1,312 @@
+import electrical_appliances.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Checks that {@link ConcurrentElectricalApplianceSet} stays consistent when many threads add,
+ * look up, remove and iterate over one shared set at the same time.
+ * <p>
+ * Every round starts all threads together on a latch so that their operations overlap, and checks
+ * the outcome through the return values: every appliance offered by several threads is added
+ * exactly once and removed exactly once, nothing a thread added is lost, and iterators running
+ * alongside the writers never fail and return every element that stayed in the set for the whole
+ * iteration exactly once. Run it with
+ * {@code java ConcurrentElectricalApplianceSetStressTest [seed]}; it exits normally if all checks
+ * pass and throws an {@link AssertionError} otherwise.
+ */
+public class ConcurrentElectricalApplianceSetStressTest {
+    /**
+     * The number of rounds run.
+     */
+    private static final int ROUNDS = 20;
+
+    /**
+     * The number of distinct appliances per round.
+     */
+    private static final int POOL_SIZE = 20_000;
+
+    /**
+     * The number of threads, at least four so that writers and readers overlap on any machine.
+     */
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private final Random random;
+    private final ElectricalAppliance[] pool;
+    private final ExecutorService executor;
+
+    /**
+     * @param seed     The seed of the appliances and of the order the threads offer them in.
+     * @param executor Runs the threads of the round.
+     */
+    private ConcurrentElectricalApplianceSetStressTest(long seed, ExecutorService executor) {
+        this.random = new Random(seed);
+        this.executor = executor;
+        pool = new ElectricalAppliance[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            String brand = i % 7 == 0 ? null : "Brand" + random.nextInt(10);
+            double power = i;
+            double emission = random.nextInt(50);
+            pool[i] = switch (i % 5) {
+                case 0 -> new ElectricStove(brand, power, emission);
+                case 1 -> new Hairdryer(brand, power, emission);
+                case 2 -> new Microwave(brand, power, emission);
+                case 3 -> new VacuumCleaner(brand, power, emission);
+                default -> new WashingMachine(brand, power, emission);
+            };
+        }
+    }
+
+    /**
+     * Runs the rounds.
+     *
+     * @param args An optional seed; a random one is used and printed otherwise.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : new Random().nextLong();
+        System.out.println("Seed: " + seed + ", threads: " + THREADS);
+        Random seeds = new Random(seed);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < ROUNDS; i++) {
+                ConcurrentElectricalApplianceSetStressTest round =
+                        new ConcurrentElectricalApplianceSetStressTest(seeds.nextLong(), executor);
+                round.checkContendedAddsAndRemoves();
+                round.checkDisjointWritersWithReaders();
+                round.checkIterationDuringWrites();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        System.out.println("All " + ROUNDS + " rounds passed.");
+    }
+
+    /**
+     * All threads offer the whole pool, each in its own order, first to {@code add} and then to
+     * {@code remove}; every appliance must be added once and removed once in total.
+     */
+    private void checkContendedAddsAndRemoves() throws InterruptedException {
+        ConcurrentElectricalApplianceSet<ElectricalAppliance> set = new ConcurrentElectricalApplianceSet<>();
+        List<Callable<Integer>> adders = new ArrayList<>();
+        List<Callable<Integer>> removers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<ElectricalAppliance> order = shuffledPool();
+            adders.add(() -> {
+                int added = 0;
+                for (ElectricalAppliance appliance : order) {
+                    if (set.add(appliance)) {
+                        added++;
+                    }
+                }
+                return added;
+            });
+            removers.add(() -> {
+                int removed = 0;
+                for (ElectricalAppliance appliance : order) {
+                    if (set.remove(equalCopy(appliance))) {
+                        removed++;
+                    }
+                }
+                return removed;
+            });
+        }
+        check(sum(runTogether(adders)) == POOL_SIZE, "every appliance is added exactly once");
+        check(set.size() == POOL_SIZE, "size after contended adds");
+        check(set.containsAll(List.of(pool)), "containsAll after contended adds");
+        check(sum(runTogether(removers)) == POOL_SIZE, "every appliance is removed exactly once");
+        check(set.isEmpty(), "empty after contended removes");
+    }
+
+    /**
+     * Each writer adds its own share of the pool and removes every other element of it while the
+     * readers look up elements of all shares; no writer may lose an element of another.
+     */
+    private void checkDisjointWritersWithReaders() throws InterruptedException {
+        ConcurrentElectricalApplianceSet<ElectricalAppliance> set = new ConcurrentElectricalApplianceSet<>();
+        int writers = THREADS / 2;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            int first = t;
+            tasks.add(() -> {
+                for (int i = first; i < POOL_SIZE; i += writers) {
+                    check(set.add(pool[i]), "add of an appliance of one writer only");
+                    check(set.contains(pool[i]), "contains right after add");
+                }
+                for (int i = first; i < POOL_SIZE; i += 2 * writers) {
+                    check(set.remove(pool[i]), "remove of an appliance of one writer only");
+                    check(!set.contains(pool[i]), "contains right after remove");
+                }
+                return 0;
+            });
+        }
+        for (int t = writers; t < THREADS; t++) {
+            long readerSeed = random.nextLong();
+            tasks.add(() -> {
+                Random reader = new Random(readerSeed);
+                int hits = 0;
+                while (writing.get()) {
+                    ElectricalAppliance appliance = pool[reader.nextInt(POOL_SIZE)];
+                    if (set.contains(reader.nextBoolean() ? appliance : equalCopy(appliance))) {
+                        hits++;
+                    }
+                    check(set.size() >= 0 && set.size() <= POOL_SIZE, "size within bounds");
+                }
+                return hits;
+            });
+        }
+        runTogether(tasks, writers, writing);
+        Set<ElectricalAppliance> expected = new HashSet<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (i % (2 * writers) >= writers) {
+                expected.add(pool[i]);
+            }
+        }
+        check(set.size() == expected.size(), "size after disjoint writes");
+        check(set.equals(expected) && expected.equals(set), "contents after disjoint writes");
+        check(set.hashCode() == expected.hashCode(), "hashCode after disjoint writes");
+    }
+
+    /**
+     * Iterates over the set while writers add and remove the upper half of the pool; the lower half
+     * stays in the set throughout, so every iteration must return all of it, each element once.
+     * An element of the upper half removed and added again during an iteration may be returned
+     * twice, as weak consistency allows.
+     */
+    private void checkIterationDuringWrites() throws InterruptedException {
+        int stable = POOL_SIZE / 2;
+        ConcurrentElectricalApplianceSet<ElectricalAppliance> set =
+                new ConcurrentElectricalApplianceSet<>(List.of(pool).subList(0, stable));
+        int writers = THREADS / 2;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            int first = stable + t;
+            tasks.add(() -> {
+                for (int pass = 0; pass < 3; pass++) {
+                    for (int i = first; i < POOL_SIZE; i += writers) {
+                        set.add(pool[i]);
+                    }
+                    for (int i = first; i < POOL_SIZE; i += writers) {
+                        set.remove(pool[i]);
+                    }
+                }
+                return 0;
+            });
+        }
+        for (int t = writers; t < THREADS; t++) {
+            tasks.add(() -> {
+                int iterations = 0;
+                do {
+                    Set<ElectricalAppliance> seen = new HashSet<>();
+                    int stableSeen = 0;
+                    for (ElectricalAppliance appliance : set) {
+                        if (appliance.getPower() < stable) {
+                            check(seen.add(appliance), "iterator returned an element twice");
+                            stableSeen++;
+                        }
+                    }
+                    check(stableSeen == stable, "iterator returned " + stableSeen + " of "
+                            + stable + " elements present throughout");
+                    iterations++;
+                } while (writing.get());
+                return iterations;
+            });
+        }
+        runTogether(tasks, writers, writing);
+        check(set.size() == stable, "size after iteration during writes");
+        check(set.containsAll(List.of(pool).subList(0, stable)), "contents after iteration during writes");
+    }
+
+    /**
+     * @return the pool in a random order.
+     */
+    private List<ElectricalAppliance> shuffledPool() {
+        List<ElectricalAppliance> order = new ArrayList<>(List.of(pool));
+        Collections.shuffle(order, random);
+        return order;
+    }
+
+    /**
+     * @return a distinct appliance equal to the specified one.
+     */
+    private static ElectricalAppliance equalCopy(ElectricalAppliance appliance) {
+        return appliance.getType().create(appliance.getBrand(), appliance.getPower(),
+                appliance.getElectromagneticEmission(), false);
+    }
+
+    /**
+     * Runs the tasks at the same time and waits for all of them.
+     *
+     * @return the results of the tasks, in order.
+     */
+    private List<Integer> runTogether(List<Callable<Integer>> tasks) throws InterruptedException {
+        return runTogether(tasks, tasks.size(), null);
+    }
+
+    /**
+     * Runs the tasks at the same time, clears the flag once the first {@code writers} tasks have
+     * ended so that the others stop, and waits for all of them.
+     *
+     * @return the results of the tasks, in order.
+     * @throws AssertionError if any task failed.
+     */
+    private List<Integer> runTogether(List<Callable<Integer>> tasks, int writers, AtomicBoolean writing)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> futures = new ArrayList<>(tasks.size());
+        for (Callable<Integer> task : tasks) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        List<Integer> results = new ArrayList<>(tasks.size());
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                if (i == writers && writing != null) {
+                    writing.set(false);
+                }
+                results.add(futures.get(i).get());
+            }
+        } catch (ExecutionException e) {
+            if (writing != null) {
+                writing.set(false);
+            }
+            throw new AssertionError("A thread failed: " + e.getCause(), e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * @return the sum of the numbers.
+     */
+    private static int sum(List<Integer> numbers) {
+        int sum = 0;
+        for (int number : numbers) {
+            sum += number;
+        }
+        return sum;
+    }
+
+    /**
+     * @throws AssertionError with the message if the condition does not hold.
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+import electrical_appliances.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Checks that {@link ElectricalApplianceSet} keeps the {@link Set} contract by running long random
+ * sequences of operations against it and against a {@link LinkedHashSet}, which has the same
+ * insertion-ordered iteration, and comparing the two after every step.
+ * <p>
+ * Every operation that modifies a set is compared by its return value, and the sets by size,
+ * iteration order, {@code toArray}, streams, {@code equals} in both directions and {@code hashCode}.
+ * The appliances are drawn from a small pool, so additions, removals and bulk operations hit
+ * present and absent elements alike. Run it with {@code java ElectricalApplianceSetContractTest
+ * [seed]}; it exits normally if all checks pass and throws an {@link AssertionError} otherwise.
+ */
+public class ElectricalApplianceSetContractTest {
+    /**
+     * The number of random sequences run.
+     */
+    private static final int SEQUENCES = 200;
+
+    /**
+     * The number of operations per sequence.
+     */
+    private static final int OPERATIONS = 2_000;
+
+    /**
+     * The number of distinct appliances the operations draw from.
+     */
+    private static final int POOL_SIZE = 300;
+
+    private final Random random;
+    private final ElectricalAppliance[] pool;
+    private final ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>();
+    private final Set<ElectricalAppliance> expected = new LinkedHashSet<>();
+
+    /**
+     * @param seed The seed of the random operations.
+     */
+    private ElectricalApplianceSetContractTest(long seed) {
+        random = new Random(seed);
+        pool = new ElectricalAppliance[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            String brand = i % 7 == 0 ? null : "Brand" + i % 5;
+            pool[i] = switch (i % 5) {
+                case 0 -> new ElectricStove(brand, i, i % 13);
+                case 1 -> new Hairdryer(brand, i, i % 13);
+                case 2 -> new Microwave(brand, i, i % 13);
+                case 3 -> new VacuumCleaner(brand, i, i % 13);
+                default -> new WashingMachine(brand, i, i % 13);
+            };
+        }
+    }
+
+    /**
+     * Runs the random sequences and the regression checks.
+     *
+     * @param args An optional seed; a random one is used and printed otherwise.
+     */
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : new Random().nextLong();
+        System.out.println("Seed: " + seed);
+        Random seeds = new Random(seed);
+        for (int i = 0; i < SEQUENCES; i++) {
+            new ElectricalApplianceSetContractTest(seeds.nextLong()).run();
+        }
+        checkIteratorsAfterIteratorRemoval();
+        checkStreamInsideIteration();
+        checkSelfReferentialBulkOperations();
+        checkLateBindingStreams();
+        System.out.println("All " + SEQUENCES + " sequences of " + OPERATIONS + " operations passed.");
+    }
+
+    /**
+     * Runs one random sequence of operations.
+     */
+    private void run() {
+        for (int step = 0; step < OPERATIONS; step++) {
+            int operation = random.nextInt(100);
+            if (operation < 35) {
+                ElectricalAppliance appliance = anyAppliance();
+                check(set.add(appliance) == expected.add(appliance), "add");
+            } else if (operation < 55) {
+                ElectricalAppliance appliance = anyAppliance();
+                check(set.remove(appliance) == expected.remove(appliance), "remove");
+            } else if (operation < 60) {
+                List<ElectricalAppliance> argument = someAppliances();
+                check(set.addAll(argument) == expected.addAll(argument), "addAll");
+            } else if (operation < 65) {
+                if (random.nextInt(20) == 0) {
+                    check(set.removeAll(set) == expected.removeAll(expected), "removeAll(itself)");
+                } else {
+                    Collection<ElectricalAppliance> argument = random.nextBoolean()
+                            ? someAppliances() : new HashSet<>(someAppliances());
+                    check(set.removeAll(argument) == expected.removeAll(argument), "removeAll");
+                }
+            } else if (operation < 70) {
+                if (random.nextInt(20) == 0) {
+                    check(set.retainAll(set) == expected.retainAll(expected), "retainAll(itself)");
+                } else {
+                    Collection<ElectricalAppliance> argument = random.nextBoolean()
+                            ? someAppliances() : new HashSet<>(someAppliances());
+                    argument.addAll(randomSubset());
+                    check(set.retainAll(argument) == expected.retainAll(argument), "retainAll");
+                }
+            } else if (operation < 75) {
+                int modulus = 2 + random.nextInt(5);
+                if (random.nextBoolean()) {
+                    check(set.removeIf(a -> (int) a.getPower() % modulus == 0)
+                            == expected.removeIf(a -> (int) a.getPower() % modulus == 0), "removeIf");
+                } else {
+                    ElectricalAppliance probe = anyAppliance();
+                    check(set.removeIf(a -> set.contains(probe) != ((int) a.getPower() % modulus == 0))
+                            == expected.removeIf(a -> expected.contains(probe) != ((int) a.getPower() % modulus == 0)),
+                            "removeIf querying the set");
+                }
+            } else if (operation < 82) {
+                removeThroughIterators();
+            } else if (operation < 90) {
+                ElectricalAppliance appliance = anyAppliance();
+                check(set.contains(appliance) == expected.contains(appliance), "contains");
+                List<ElectricalAppliance> argument = someAppliances();
+                check(set.containsAll(argument) == expected.containsAll(argument), "containsAll");
+            } else if (operation < 91) {
+                set.clear(random.nextBoolean());
+                expected.clear();
+            } else {
+                checkStreams();
+            }
+            checkSameContents();
+        }
+    }
+
+    /**
+     * Removes a random share of the elements through iterators of both sets, in step.
+     */
+    private void removeThroughIterators() {
+        Iterator<ElectricalAppliance> actual = set.iterator();
+        Iterator<ElectricalAppliance> reference = expected.iterator();
+        double share = random.nextDouble();
+        while (reference.hasNext()) {
+            check(actual.hasNext(), "iterator.hasNext");
+            ElectricalAppliance next = reference.next();
+            check(actual.next() == next, "iterator.next");
+            if (random.nextDouble() < share) {
+                actual.remove();
+                reference.remove();
+            }
+        }
+        check(!actual.hasNext(), "iterator end");
+    }
+
+    /**
+     * Compares sequential and parallel streams with the reference contents.
+     */
+    private void checkStreams() {
+        List<ElectricalAppliance> order = new ArrayList<>(expected);
+        check(set.stream().collect(Collectors.toList()).equals(order), "stream order");
+        check(set.parallelStream().collect(Collectors.toList()).equals(order), "parallel stream order");
+        check(set.stream().count() == expected.size(), "stream count");
+    }
+
+    /**
+     * Compares the two sets in every observable way.
+     */
+    private void checkSameContents() {
+        check(set.size() == expected.size(), "size");
+        check(set.isEmpty() == expected.isEmpty(), "isEmpty");
+        List<ElectricalAppliance> order = new ArrayList<>(expected);
+        check(new ArrayList<>(set).equals(order), "iteration order");
+        check(List.of(set.toArray()).equals(order), "toArray");
+        check(List.of(set.toArray(new ElectricalAppliance[0])).equals(order), "toArray(T[])");
+        check(set.equals(expected) && expected.equals(set), "equals");
+        check(set.hashCode() == expected.hashCode(), "hashCode");
+    }
+
+    /**
+     * @return one appliance of the pool, or an equal copy of it.
+     */
+    private ElectricalAppliance anyAppliance() {
+        ElectricalAppliance appliance = pool[random.nextInt(POOL_SIZE)];
+        if (random.nextInt(4) == 0) {
+            return appliance.getType().create(appliance.getBrand(), appliance.getPower(),
+                    appliance.getElectromagneticEmission(), false);
+        }
+        return appliance;
+    }
+
+    /**
+     * @return a list of up to 40 appliances of the pool, possibly with repetitions.
+     */
+    private List<ElectricalAppliance> someAppliances() {
+        int count = random.nextInt(40);
+        List<ElectricalAppliance> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(anyAppliance());
+        }
+        return result;
+    }
+
+    /**
+     * @return a random share of the current elements.
+     */
+    private List<ElectricalAppliance> randomSubset() {
+        double share = random.nextDouble();
+        List<ElectricalAppliance> result = new ArrayList<>();
+        for (ElectricalAppliance appliance : expected) {
+            if (random.nextDouble() < share) {
+                result.add(appliance);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * An iterator created after another one removed elements must still see every remaining element,
+     * or fail fast, once the first one reaches its end.
+     */
+    private static void checkIteratorsAfterIteratorRemoval() {
+        ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>();
+        for (int i = 0; i < 10; i++) {
+            set.add(new Microwave("Brand" + i, i, i));
+        }
+        Iterator<ElectricalAppliance> first = set.iterator();
+        for (int i = 0; i < 8; i++) {
+            first.next();
+            first.remove();
+        }
+        Iterator<ElectricalAppliance> second = set.iterator();
+        while (first.hasNext()) {
+            first.next();
+        }
+        int seen = 0;
+        try {
+            while (second.hasNext()) {
+                second.next();
+                seen++;
+            }
+            check(seen == 2, "second iterator saw " + seen + " of 2 elements");
+        } catch (ConcurrentModificationException e) {
+            // Failing fast is allowed; skipping elements silently is not.
+        }
+    }
+
+    /**
+     * Streaming over the set must not disturb an iteration in progress.
+     */
+    private static void checkStreamInsideIteration() {
+        ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>();
+        for (int i = 0; i < 10; i++) {
+            set.add(new Hairdryer("Brand" + i, i, i));
+        }
+        set.remove(new Hairdryer("Brand3", 3, 3));
+        long total = 0;
+        for (ElectricalAppliance ignored : set) {
+            total += set.stream().count() + set.parallelStream().count();
+        }
+        check(total == 9 * 18, "streams inside iteration");
+    }
+
+    /**
+     * Bulk removals whose predicate or argument reads the set itself must see the set unchanged
+     * until they decide what to remove, also when the set has holes left by earlier removals.
+     */
+    private static void checkSelfReferentialBulkOperations() {
+        ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>();
+        Set<ElectricalAppliance> expected = new LinkedHashSet<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 100; i++) {
+                ElectricalAppliance appliance = new Microwave("Brand" + i % 3, i, i % 7);
+                set.add(appliance);
+                expected.add(appliance);
+            }
+            for (int i = 0; i < 100; i += 3) {
+                ElectricalAppliance appliance = new Microwave("Brand" + i % 3, i, i % 7);
+                set.remove(appliance);
+                expected.remove(appliance);
+            }
+            ElectricalAppliance first = set.iterator().next();
+            switch (round) {
+                case 0 -> check(set.removeIf(a -> set.contains(first) && a.getPower() % 2 == 0)
+                        == expected.removeIf(a -> expected.contains(first) && a.getPower() % 2 == 0),
+                        "removeIf querying the set");
+                case 1 -> check(set.retainAll(set) == expected.retainAll(expected), "retainAll(itself)");
+                default -> check(set.removeAll(set) == expected.removeAll(expected), "removeAll(itself)");
+            }
+            check(new ArrayList<>(set).equals(new ArrayList<>(expected)), "contents after self-referential removal");
+            check(set.removeIf(a -> set.contains(a)) == expected.removeIf(a -> expected.contains(a)),
+                    "removeIf testing membership of each element");
+            check(set.isEmpty() && expected.isEmpty(), "empty after removing every member");
+        }
+        for (int i = 0; i < 10; i++) {
+            set.add(new Hairdryer("Brand", i, i));
+        }
+        try {
+            set.removeIf(a -> set.add(new Hairdryer("Other", a.getPower(), 0)));
+            throw new AssertionError("removeIf with a predicate adding to the set did not fail");
+        } catch (ConcurrentModificationException e) {
+            // Expected, as for the iterator-based removeIf of LinkedHashSet.
+        }
+    }
+
+    /**
+     * Streams and spliterators must cover the elements present when they start, not when they were
+     * created, and fail once the set is modified after they started.
+     */
+    private static void checkLateBindingStreams() {
+        ElectricalApplianceSet<ElectricalAppliance> set = new ElectricalApplianceSet<>();
+        for (int i = 0; i < 10; i++) {
+            set.add(new VacuumCleaner("Brand" + i, i, i));
+        }
+        Stream<ElectricalAppliance> stream = set.stream();
+        Stream<ElectricalAppliance> parallel = set.parallelStream();
+        Spliterator<ElectricalAppliance> spliterator = set.spliterator();
+        set.add(new VacuumCleaner("Brand", 10, 0));
+        check(stream.count() == 11, "stream created before an addition");
+        set.remove(new VacuumCleaner("Brand0", 0, 0));
+        check(parallel.map(ElectricalAppliance::getPower).collect(Collectors.toList())
+                .equals(set.stream().map(ElectricalAppliance::getPower).collect(Collectors.toList())),
+                "parallel stream created before modifications");
+        check(spliterator.estimateSize() == 10 && spliterator.hasCharacteristics(Spliterator.SIZED), "spliterator size bound on first use");
+        set.add(new VacuumCleaner("Brand", 11, 0));
+        try {
+            spliterator.forEachRemaining(a -> { });
+            throw new AssertionError("spliterator bound before a modification did not fail");
+        } catch (ConcurrentModificationException e) {
+            // Expected: the spliterator was bound by estimateSize.
+        }
+    }
+
+    /**
+     * @throws AssertionError with the message if the condition does not hold.
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
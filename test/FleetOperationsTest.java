@@ -0,0 +1,267 @@
+import electrical_appliances.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Checks {@link FleetOperations} against a simulated device gateway that runs in the same process
+ * and answers after a fixed latency, failing or hanging for chosen appliances.
+ * <p>
+ * The checks cover a large command finishing in far less time than sequential calls would take,
+ * failures and timeouts being reported without changing the appliances, the concurrency bound,
+ * and interruption of a command, which must not return before the calls it started have ended.
+ * Run it with {@code java FleetOperationsTest}; it exits normally if all checks pass and throws
+ * an {@link AssertionError} otherwise.
+ */
+public class FleetOperationsTest {
+    /**
+     * A device gateway simulated in memory. Every call sleeps for the latency; calls to the failing
+     * appliances then throw, and calls to the hanging appliances sleep until they are interrupted,
+     * or, if the gateway ignores interruption, until {@link #release} is counted down.
+     */
+    private static final class SimulatedGateway implements FleetOperations.DeviceGateway {
+        private final long latencyMillis;
+        private final Set<ElectricalAppliance> failing = new HashSet<>();
+        private final Set<ElectricalAppliance> hanging = new HashSet<>();
+        private final boolean ignoresInterruption;
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        /**
+         * @param latencyMillis       The time every call takes.
+         * @param ignoresInterruption Whether hanging calls ignore interruption.
+         */
+        SimulatedGateway(long latencyMillis, boolean ignoresInterruption) {
+            this.latencyMillis = latencyMillis;
+            this.ignoresInterruption = ignoresInterruption;
+        }
+
+        @Override
+        public void execute(ElectricalAppliance appliance, FleetOperations.Command command) throws Exception {
+            started.incrementAndGet();
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latencyMillis);
+                if (failing.contains(appliance)) {
+                    throw new IllegalStateException("Device does not respond: " + appliance.getPower());
+                }
+                if (hanging.contains(appliance)) {
+                    if (ignoresInterruption) {
+                        awaitUninterruptibly(release);
+                    } else {
+                        Thread.sleep(Long.MAX_VALUE);
+                    }
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs the checks.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) throws Exception {
+        checkLargeCommand();
+        checkFailuresAndTimeouts();
+        checkConcurrencyBound();
+        checkInterruptionCancelsCalls();
+        checkInterruptionWaitsForCalls();
+        System.out.println("All fleet operation checks passed.");
+    }
+
+    /**
+     * Ten thousand calls of 5 ms each, 1000 at a time, must all succeed, plug in every appliance
+     * and take a small fraction of the 50 s sequential calls would.
+     */
+    private static void checkLargeCommand() throws InterruptedException {
+        List<ElectricalAppliance> appliances = appliances(10_000);
+        SimulatedGateway gateway = new SimulatedGateway(5, false);
+        try (FleetOperations operations = new FleetOperations(gateway, 1000, Duration.ofSeconds(10))) {
+            FleetOperations.Report report = operations.plugInAll(appliances);
+            System.out.println(report);
+            check(report.requested() == appliances.size(), "requested");
+            check(report.succeeded() == appliances.size(), "succeeded");
+            check(report.failures().isEmpty() && report.timedOut().isEmpty(), "no failures or timeouts");
+            check(appliances.stream().allMatch(ElectricalAppliance::isPluggedIn), "all plugged in");
+            check(report.elapsedNanos() < TimeUnit.SECONDS.toNanos(10), "finished in " + report.elapsedNanos() / 1e6 + " ms");
+
+            report = operations.unplugAll(appliances);
+            check(report.succeeded() == appliances.size(), "unplug succeeded");
+            check(appliances.stream().noneMatch(ElectricalAppliance::isPluggedIn), "all unplugged");
+        }
+    }
+
+    /**
+     * Failing and hanging calls must be reported as such and leave their appliances unchanged,
+     * and the hanging calls must be cut off by the timeout.
+     */
+    private static void checkFailuresAndTimeouts() throws InterruptedException {
+        List<ElectricalAppliance> appliances = appliances(200);
+        SimulatedGateway gateway = new SimulatedGateway(1, false);
+        for (int i = 0; i < appliances.size(); i++) {
+            if (i % 10 == 3) {
+                gateway.failing.add(appliances.get(i));
+            } else if (i % 10 == 7) {
+                gateway.hanging.add(appliances.get(i));
+            }
+        }
+        try (FleetOperations operations = new FleetOperations(gateway, 50, Duration.ofMillis(200))) {
+            FleetOperations.Report report = operations.plugInAll(appliances);
+            System.out.println(report);
+            check(report.succeeded() == 160, "succeeded: " + report.succeeded());
+            check(report.failures().keySet().equals(gateway.failing), "failed appliances");
+            check(report.failures().values().stream().allMatch(e -> e instanceof IllegalStateException),
+                    "failure causes");
+            check(new HashSet<>(report.timedOut()).equals(gateway.hanging), "timed out appliances");
+            check(report.elapsedNanos() < TimeUnit.SECONDS.toNanos(5), "timeouts enforced");
+            for (ElectricalAppliance appliance : appliances) {
+                boolean confirmed = !gateway.failing.contains(appliance) && !gateway.hanging.contains(appliance);
+                check(appliance.isPluggedIn() == confirmed, "plugged in only once confirmed");
+            }
+        }
+    }
+
+    /**
+     * No more calls than the concurrency bound may be in progress at once.
+     */
+    private static void checkConcurrencyBound() throws InterruptedException {
+        List<ElectricalAppliance> appliances = appliances(500);
+        SimulatedGateway gateway = new SimulatedGateway(2, false);
+        try (FleetOperations operations = new FleetOperations(gateway, 16, Duration.ofSeconds(10))) {
+            FleetOperations.Report report = operations.probeAll(appliances);
+            check(report.succeeded() == appliances.size(), "probe succeeded");
+            check(gateway.maxInFlight.get() <= 16, "concurrency bound exceeded: " + gateway.maxInFlight.get());
+            check(appliances.stream().noneMatch(ElectricalAppliance::isPluggedIn), "probe leaves appliances unchanged");
+        }
+    }
+
+    /**
+     * Interrupting a command whose calls respond to interruption must cancel them promptly
+     * and start no further calls.
+     */
+    private static void checkInterruptionCancelsCalls() throws InterruptedException {
+        List<ElectricalAppliance> appliances = appliances(100);
+        SimulatedGateway gateway = new SimulatedGateway(0, false);
+        gateway.hanging.addAll(appliances);
+        try (FleetOperations operations = new FleetOperations(gateway, 10, Duration.ofSeconds(60))) {
+            AtomicReference<Throwable> thrown = new AtomicReference<>();
+            AtomicInteger inFlightOnReturn = new AtomicInteger(-1);
+            Thread runner = startCommand(operations, appliances, gateway, thrown, inFlightOnReturn);
+            awaitInFlight(gateway, 10);
+            long interrupted = System.nanoTime();
+            runner.interrupt();
+            runner.join(TimeUnit.SECONDS.toMillis(5));
+            check(!runner.isAlive(), "interrupted command did not return");
+            check(System.nanoTime() - interrupted < TimeUnit.SECONDS.toNanos(5), "cancellation is prompt");
+            check(thrown.get() instanceof InterruptedException, "command threw " + thrown.get());
+            check(inFlightOnReturn.get() == 0, "calls in progress on return: " + inFlightOnReturn.get());
+            check(gateway.started.get() == 10, "calls started: " + gateway.started.get());
+        }
+    }
+
+    /**
+     * Interrupting a command whose calls ignore interruption must not return before they end.
+     */
+    private static void checkInterruptionWaitsForCalls() throws InterruptedException {
+        List<ElectricalAppliance> appliances = appliances(100);
+        SimulatedGateway gateway = new SimulatedGateway(0, true);
+        gateway.hanging.addAll(appliances);
+        try (FleetOperations operations = new FleetOperations(gateway, 10, Duration.ofSeconds(60))) {
+            AtomicReference<Throwable> thrown = new AtomicReference<>();
+            AtomicInteger inFlightOnReturn = new AtomicInteger(-1);
+            Thread runner = startCommand(operations, appliances, gateway, thrown, inFlightOnReturn);
+            awaitInFlight(gateway, 10);
+            runner.interrupt();
+            runner.join(300);
+            check(runner.isAlive(), "interrupted command returned while its calls were in progress");
+            gateway.release.countDown();
+            runner.join(TimeUnit.SECONDS.toMillis(5));
+            check(!runner.isAlive(), "interrupted command did not return after its calls ended");
+            check(thrown.get() instanceof InterruptedException, "command threw " + thrown.get());
+            check(inFlightOnReturn.get() == 0, "calls in progress on return: " + inFlightOnReturn.get());
+            check(gateway.started.get() == 10, "calls started: " + gateway.started.get());
+        }
+    }
+
+    /**
+     * Starts a thread probing the appliances, which records what the command threw and the number
+     * of gateway calls in progress when it returned.
+     */
+    private static Thread startCommand(FleetOperations operations, List<ElectricalAppliance> appliances,
+                                       SimulatedGateway gateway, AtomicReference<Throwable> thrown,
+                                       AtomicInteger inFlightOnReturn) {
+        Thread runner = new Thread(() -> {
+            try {
+                operations.probeAll(appliances);
+            } catch (Throwable e) {
+                thrown.set(e);
+            } finally {
+                inFlightOnReturn.set(gateway.inFlight.get());
+            }
+        });
+        runner.start();
+        return runner;
+    }
+
+    /**
+     * Waits until the specified number of gateway calls are in progress.
+     */
+    private static void awaitInFlight(SimulatedGateway gateway, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gateway.inFlight.get() < count) {
+            check(System.nanoTime() < deadline, "calls did not start");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits for the latch to reach zero, ignoring interruption but keeping the interrupt status.
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the specified number of distinct unplugged appliances.
+     */
+    private static List<ElectricalAppliance> appliances(int count) {
+        List<ElectricalAppliance> appliances = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            appliances.add(i % 2 == 0 ? new Microwave("Brand" + i % 5, i, i % 13)
+                    : new Hairdryer("Brand" + i % 5, i, i % 13));
+        }
+        return appliances;
+    }
+
+    /**
+     * @throws AssertionError with the message if the condition does not hold.
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}